@@ -7,7 +7,6 @@
 #include <algorithm>
 #include <vector>
 #include <cstring>
-#include "utfstring.h"
 
 
 // --
@@ -35,24 +34,26 @@ typedef enum {
 class MarkdownSymbol {
 public:
     MARKDOWN_SYMBOL_TYPE type;
-    UTFStringIndex startIndex;
-    UTFStringIndex endIndex;
+    int startPosition;
+    int endPosition;
     int line;
     int linePosition;
 public:
-    MarkdownSymbol(): type(MARKDOWN_SYMBOL_INVALID), startIndex(UTFStringIndex(nullptr)), endIndex(UTFStringIndex(nullptr)), line(0), linePosition(0) {
+    MarkdownSymbol(): type(MARKDOWN_SYMBOL_INVALID), startPosition(-1), endPosition(-1), line(0), linePosition(0) {
     }
 
-    MarkdownSymbol(MARKDOWN_SYMBOL_TYPE type, int line, const UTFStringIndex &startIndex, const UTFStringIndex &endIndex, int linePosition): type(type), startIndex(startIndex), endIndex(endIndex), line(line), linePosition(linePosition) {
+    MarkdownSymbol(MARKDOWN_SYMBOL_TYPE type, int line, int startPosition, int endPosition, int linePosition): type(type), startPosition(startPosition), endPosition(endPosition), line(line), linePosition(linePosition) {
     }
 
-    MarkdownSymbol(const MarkdownSymbol &other): type(other.type), startIndex(other.startIndex), endIndex(other.endIndex), line(other.line), linePosition(other.linePosition) {
+    MarkdownSymbol(const MarkdownSymbol &other): type(other.type), startPosition(other.startPosition), endPosition(other.endPosition), line(other.line), linePosition(other.linePosition) {
     }
 
-    void update(MARKDOWN_SYMBOL_TYPE newType, int newLine, const UTFStringIndex &newStartIndex, const UTFStringIndex &newEndIndex, int newLinePosition) {
+    MarkdownSymbol &operator=(const MarkdownSymbol &other) = default;
+
+    void update(MARKDOWN_SYMBOL_TYPE newType, int newLine, int newStartPosition, int newEndPosition, int newLinePosition) {
         type = newType;
-        startIndex = newStartIndex;
-        endIndex = newEndIndex;
+        startPosition = newStartPosition;
+        endPosition = newEndPosition;
         line = newLine;
         linePosition = newLinePosition;
     }
@@ -65,26 +66,53 @@ public:
         type = MARKDOWN_SYMBOL_INVALID;
     }
 
-    void updateEndPosition(const UTFStringIndex &index) {
-        endIndex = index;
+    void updateEndPosition(int position) {
+        endPosition = position;
     }
 
-    void toArray(jint *ptr) const {
+    void toColumns(jint *ptr, int index, int columnCapacity) const {
         if (ptr) {
-            ptr[0] = type;
-            ptr[1] = line;
-            ptr[2] = startIndex.chrPos;
-            ptr[3] = endIndex.chrPos;
-            ptr[4] = linePosition;
+            ptr[index] = type - 1;
+            ptr[columnCapacity + index] = line;
+            ptr[columnCapacity * 2 + index] = startPosition;
+            ptr[columnCapacity * 3 + index] = endPosition;
+            ptr[columnCapacity * 4 + index] = linePosition;
         }
     }
 
+    bool operator<(const MarkdownSymbol &other) const {
+        return startPosition < other.startPosition;
+    }
+
     static unsigned char fieldCount() {
         return 5;
     }
 };
 
 
+// --
+// Lookup table for characters which can start or end a symbol
+// --
+
+class SymbolCharacterTable {
+public:
+    bool symbolCharacters[128];
+public:
+    SymbolCharacterTable() {
+        memset(symbolCharacters, 0, sizeof(symbolCharacters));
+        for (const char *character = "\\\"\n#*_~[]()"; *character; character++) {
+            symbolCharacters[(unsigned char)*character] = true;
+        }
+    }
+
+    bool isSymbolCharacter(jchar character) const {
+        return character < 128 && symbolCharacters[character];
+    }
+};
+
+static const SymbolCharacterTable symbolCharacterTable;
+
+
 // --
 // Markdown symbol finder class
 // --
@@ -101,14 +129,38 @@ private:
     MarkdownSymbol currentTextStyleSymbol;
     MarkdownSymbol currentListItemSymbol;
     bool needListDotSeparator = false;
+    int scanPosition = 0;
 public:
-    void addCharacter(int position, const UTFStringIndex &index, const UTFStringIndex &nextIndex, int character) {
+    void scanChunk(const jchar *chunk, int count) {
+        // Skip over runs of plain characters when no symbol is in progress, positions continue from the previous chunk
+        int index = 0;
+        while (index < count) {
+            if (canSkipPlainCharacters(scanPosition + index)) {
+                int runStartIndex = index;
+                while (index < count && !symbolCharacterTable.isSymbolCharacter(chunk[index])) {
+                    if (chunk[index] != ' ' && chunk[index] != '\t') {
+                        currentTextBlockSymbol.endPosition = scanPosition + index + 1;
+                    }
+                    index++;
+                }
+                linePosition += index - runStartIndex;
+                if (index == count) {
+                    break;
+                }
+            }
+            addCharacter(scanPosition + index, chunk[index]);
+            index++;
+        }
+        scanPosition += count;
+    }
+
+    void addCharacter(int position, jchar character) {
         // Handle character escaping
         bool escaped;
         if (character == '\\') {
             if (lastEscapePosition != position - 1) {
                 lastEscapePosition = position;
-                symbols.emplace_back(MARKDOWN_SYMBOL_ESCAPE, currentLine, index, nextIndex, linePosition);
+                symbols.emplace_back(MARKDOWN_SYMBOL_ESCAPE, currentLine, position, position + 1, linePosition);
             }
             escaped = true;
         } else {
@@ -117,17 +169,17 @@ public:
 
         // Check for double quotes
         if (!escaped && character == '"') {
-            symbols.emplace_back(MARKDOWN_SYMBOL_DOUBLE_QUOTE, currentLine, index, nextIndex, linePosition);
+            symbols.emplace_back(MARKDOWN_SYMBOL_DOUBLE_QUOTE, currentLine, position, position + 1, linePosition);
         }
 
         // Check for text blocks
         bool isTextCharacter = escaped || (character != ' ' && character != '\n' && character != '\t');
         if (currentTextBlockSymbol.valid()) {
             if (isTextCharacter) {
-                currentTextBlockSymbol.updateEndPosition(nextIndex);
+                currentTextBlockSymbol.updateEndPosition(position + 1);
             }
         } else if (isTextCharacter) {
-            currentTextBlockSymbol.update(MARKDOWN_SYMBOL_TEXT_BLOCK, currentLine, index, nextIndex, linePosition);
+            currentTextBlockSymbol.update(MARKDOWN_SYMBOL_TEXT_BLOCK, currentLine, position, position + 1, linePosition);
         }
 
         // Check for newlines
@@ -136,20 +188,20 @@ public:
                 symbols.emplace_back(MarkdownSymbol(currentTextBlockSymbol));
                 currentTextBlockSymbol.makeInvalid();
             }
-            symbols.emplace_back(MARKDOWN_SYMBOL_NEWLINE, currentLine, index, nextIndex, linePosition);
+            symbols.emplace_back(MARKDOWN_SYMBOL_NEWLINE, currentLine, position, position + 1, linePosition);
         }
 
         // Check for headers
         bool isHeaderCharacter = character == '#' && !escaped;
         if (currentHeaderSymbol.valid()) {
             if (isHeaderCharacter) {
-                currentHeaderSymbol.updateEndPosition(nextIndex);
+                currentHeaderSymbol.updateEndPosition(position + 1);
             } else {
                 symbols.emplace_back(MarkdownSymbol(currentHeaderSymbol));
                 currentHeaderSymbol.makeInvalid();
             }
         } else if (isHeaderCharacter) {
-            currentHeaderSymbol.update(MARKDOWN_SYMBOL_HEADER, currentLine, index, nextIndex, linePosition);
+            currentHeaderSymbol.update(MARKDOWN_SYMBOL_HEADER, currentLine, position, position + 1, linePosition);
         }
 
         // Check for text styles
@@ -165,16 +217,16 @@ public:
         }
         if (currentTextStyleSymbol.valid()) {
             if (currentTextStyleSymbol.type == textStyleType) {
-                currentTextStyleSymbol.updateEndPosition(nextIndex);
+                currentTextStyleSymbol.updateEndPosition(position + 1);
             } else {
                 symbols.emplace_back(MarkdownSymbol(currentTextStyleSymbol));
                 currentTextStyleSymbol.makeInvalid();
                 if (textStyleType != MARKDOWN_SYMBOL_ESCAPE) {
-                    currentTextStyleSymbol.update(textStyleType, currentLine, index, nextIndex, linePosition);
+                    currentTextStyleSymbol.update(textStyleType, currentLine, position, position + 1, linePosition);
                 }
             }
         } else if (textStyleType != MARKDOWN_SYMBOL_ESCAPE) {
-            currentTextStyleSymbol.update(textStyleType, currentLine, index, nextIndex, linePosition);
+            currentTextStyleSymbol.update(textStyleType, currentLine, position, position + 1, linePosition);
         }
 
         // Check for lists
@@ -185,7 +237,7 @@ public:
                     currentListItemSymbol.makeInvalid();
                 } else if (currentListItemSymbol.type == MARKDOWN_SYMBOL_ORDERED_LIST_ITEM) {
                     if (needListDotSeparator && ((character >= '0' && character <= '9') || character == '.')) {
-                        currentListItemSymbol.updateEndPosition(nextIndex);
+                        currentListItemSymbol.updateEndPosition(position + 1);
                         if (character == '.') {
                             needListDotSeparator = false;
                         }
@@ -198,10 +250,10 @@ public:
                 } else {
                     currentListItemSymbol.makeInvalid();
                 }
-            } else if (currentTextBlockSymbol.valid() && currentTextBlockSymbol.startIndex.chrPos == position) {
+            } else if (currentTextBlockSymbol.valid() && currentTextBlockSymbol.startPosition == position) {
                 bool isBulletCharacter = character == '*' || character == '+' || character == '-';
                 if (isBulletCharacter || (character >= '0' && character <= '9')) {
-                    currentListItemSymbol.update(isBulletCharacter ? MARKDOWN_SYMBOL_UNORDERED_LIST_ITEM : MARKDOWN_SYMBOL_ORDERED_LIST_ITEM, currentLine, index, nextIndex, linePosition);
+                    currentListItemSymbol.update(isBulletCharacter ? MARKDOWN_SYMBOL_UNORDERED_LIST_ITEM : MARKDOWN_SYMBOL_ORDERED_LIST_ITEM, currentLine, position, position + 1, linePosition);
                     needListDotSeparator = !isBulletCharacter;
                 }
             }
@@ -224,7 +276,7 @@ public:
                 linkSymbolType = MARKDOWN_SYMBOL_ESCAPE;
             }
             if (linkSymbolType != MARKDOWN_SYMBOL_ESCAPE) {
-                symbols.emplace_back(linkSymbolType, currentLine, index, nextIndex, linePosition);
+                symbols.emplace_back(linkSymbolType, currentLine, position, position + 1, linePosition);
             }
         }
 
@@ -238,6 +290,7 @@ public:
     }
 
     void finalizeScanning() {
+        // Finish symbol finders in progress
         if (currentTextBlockSymbol.valid()) {
             symbols.emplace_back(currentTextBlockSymbol);
         }
@@ -247,46 +300,120 @@ public:
         if (currentTextStyleSymbol.valid()) {
             symbols.emplace_back(currentTextStyleSymbol);
         }
+
+        // Sort found symbols and remove duplicates
+        std::stable_sort(symbols.begin(), symbols.end());
+        cleanOverlaps();
+    }
+
+private:
+    bool canSkipPlainCharacters(int position) const {
+        // Plain characters only extend the text block when it's already started and nothing else is in progress (including escaping)
+        return currentTextBlockSymbol.valid() && !currentHeaderSymbol.valid() && !currentTextStyleSymbol.valid() && !currentListItemSymbol.valid() && lastEscapePosition != position - 1;
+    }
+
+    void cleanOverlaps() {
+        // Unordered list items override single character text style symbols at the same position
+        size_t writeIndex = 0;
+        size_t groupStart = 0;
+        while (groupStart < symbols.size()) {
+            size_t groupEnd = groupStart + 1;
+            bool hasListItem = symbols[groupStart].type == MARKDOWN_SYMBOL_UNORDERED_LIST_ITEM;
+            while (groupEnd < symbols.size() && symbols[groupEnd].startPosition == symbols[groupStart].startPosition) {
+                hasListItem |= symbols[groupEnd].type == MARKDOWN_SYMBOL_UNORDERED_LIST_ITEM;
+                groupEnd++;
+            }
+            for (size_t index = groupStart; index < groupEnd; index++) {
+                const MarkdownSymbol &symbol = symbols[index];
+                if (!hasListItem || symbol.type != MARKDOWN_SYMBOL_FIRST_TEXT_STYLE || symbol.endPosition - symbol.startPosition != 1) {
+                    if (writeIndex != index) {
+                        symbols[writeIndex] = symbol;
+                    }
+                    writeIndex++;
+                }
+            }
+            groupStart = groupEnd;
+        }
+        symbols.erase(symbols.begin() + writeIndex, symbols.end());
     }
 };
 
 
 // --
-// JNI function to find all supported markdown symbols
+// Utility function to write symbols into a java owned buffer
+// --
+
+static jint writeSymbols(JNIEnv *env, const MarkdownNativeSymbolFinder &symbolFinder, jobject symbolBuffer) {
+    // Write one column for each field, nothing is written if it doesn't fit (the caller sizes the buffer with the symbol count first)
+    jint *bufferPointer = (jint *)env->GetDirectBufferAddress(symbolBuffer);
+    jlong columnCapacity = env->GetDirectBufferCapacity(symbolBuffer) / (jlong)(sizeof(jint) * MarkdownSymbol::fieldCount());
+    jint symbolCount = (jint)symbolFinder.symbols.size();
+    if (bufferPointer && symbolCount <= columnCapacity) {
+        for (jint i = 0; i < symbolCount; i++) {
+            symbolFinder.symbols[i].toColumns(bufferPointer, i, (int)columnCapacity);
+        }
+    }
+    return symbolCount;
+}
+
+
+// --
+// JNI functions to find all supported markdown symbols
 // --
 
 extern "C"
 {
-JNIEXPORT jintArray JNICALL
-Java_com_crescentflare_simplemarkdownparser_symbolfinder_SimpleMarkdownSymbolFinderNative_scanNativeText(JNIEnv *env, jobject instance, jstring markdownText_) {
-    // Java string conversion
-    const char *markdownTextPointer = env->GetStringUTFChars(markdownText_, nullptr);
-    UTFString markdownText(markdownTextPointer);
-
-    // Loop over string and find symbols
-    MarkdownNativeSymbolFinder symbolFinder;
-    const UTFStringIndex maxLength = markdownText.endIndex();
-    UTFStringIndex index = markdownText.startIndex();
-    while (index < maxLength) {
-        const UTFStringIndex nextIndex = index + 1;
-        symbolFinder.addCharacter(index.chrPos, index, nextIndex, markdownText[index]);
-        index = nextIndex;
+JNIEXPORT jlong JNICALL
+Java_com_crescentflare_simplemarkdownparser_symbolfinder_SimpleMarkdownSymbolFinderNative_createNativeScanner(JNIEnv *env, jobject instance) {
+    return (jlong)new MarkdownNativeSymbolFinder();
+}
+
+JNIEXPORT void JNICALL
+Java_com_crescentflare_simplemarkdownparser_symbolfinder_SimpleMarkdownSymbolFinderNative_scanNativeString(JNIEnv *env, jobject instance, jlong scanner, jstring markdownText_) {
+    // Loop over the UTF-16 characters of the java string in one go, the symbols are kept by the scanner
+    MarkdownNativeSymbolFinder *symbolFinder = (MarkdownNativeSymbolFinder *)scanner;
+    const jsize length = env->GetStringLength(markdownText_);
+    const jchar *markdownText = env->GetStringCritical(markdownText_, nullptr);
+    if (symbolFinder && markdownText) {
+        symbolFinder->scanChunk(markdownText, length);
     }
-    symbolFinder.finalizeScanning();
-
-    // Convert symbols into a java array, clean up and return
-    jintArray returnArray = nullptr;
-    jint *convertedValues = (jint *)malloc(symbolFinder.symbols.size() * MarkdownSymbol::fieldCount() * sizeof(jint));
-    if (convertedValues) {
-        returnArray = env->NewIntArray(symbolFinder.symbols.size() * MarkdownSymbol::fieldCount());
-        int i;
-        for (i = 0; i < symbolFinder.symbols.size(); i++) {
-            symbolFinder.symbols[i].toArray(&convertedValues[i * MarkdownSymbol::fieldCount()]);
-        }
-        env->SetIntArrayRegion(returnArray, 0, symbolFinder.symbols.size() * MarkdownSymbol::fieldCount(), convertedValues);
-        free(convertedValues);
+    if (markdownText) {
+        env->ReleaseStringCritical(markdownText_, markdownText);
+    }
+}
+
+JNIEXPORT void JNICALL
+Java_com_crescentflare_simplemarkdownparser_symbolfinder_SimpleMarkdownSymbolFinderNative_scanNativeChunk(JNIEnv *env, jobject instance, jlong scanner, jcharArray chunk_, jint count) {
+    MarkdownNativeSymbolFinder *symbolFinder = (MarkdownNativeSymbolFinder *)scanner;
+    jchar *chunk = (jchar *)env->GetPrimitiveArrayCritical(chunk_, nullptr);
+    if (symbolFinder && chunk) {
+        symbolFinder->scanChunk(chunk, count);
+    }
+    if (chunk) {
+        env->ReleasePrimitiveArrayCritical(chunk_, chunk, JNI_ABORT);
+    }
+}
+
+JNIEXPORT jint JNICALL
+Java_com_crescentflare_simplemarkdownparser_symbolfinder_SimpleMarkdownSymbolFinderNative_finalizeNativeScanner(JNIEnv *env, jobject instance, jlong scanner) {
+    MarkdownNativeSymbolFinder *symbolFinder = (MarkdownNativeSymbolFinder *)scanner;
+    if (symbolFinder) {
+        symbolFinder->finalizeScanning();
+        return (jint)symbolFinder->symbols.size();
     }
-    env->ReleaseStringUTFChars(markdownText_, markdownTextPointer);
-    return returnArray;
+    return 0;
+}
+
+JNIEXPORT void JNICALL
+Java_com_crescentflare_simplemarkdownparser_symbolfinder_SimpleMarkdownSymbolFinderNative_writeNativeSymbols(JNIEnv *env, jobject instance, jlong scanner, jobject symbolBuffer) {
+    MarkdownNativeSymbolFinder *symbolFinder = (MarkdownNativeSymbolFinder *)scanner;
+    if (symbolFinder) {
+        writeSymbols(env, *symbolFinder, symbolBuffer);
+    }
+}
+
+JNIEXPORT void JNICALL
+Java_com_crescentflare_simplemarkdownparser_symbolfinder_SimpleMarkdownSymbolFinderNative_destroyNativeScanner(JNIEnv *env, jobject instance, jlong scanner) {
+    delete (MarkdownNativeSymbolFinder *)scanner;
 }
 }
@@ -0,0 +1,14 @@
+package com.crescentflare.simplemarkdownparser.conversion;
+
+import android.text.SpannableStringBuilder;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Simple markdown parser library: helper class
+ * An optional extension of the span generator which receives the spans of a section at once instead of one by one
+ * Batches start at each section (or section spacer), section spacer spans are still applied separately before the spacer batch
+ */
+public interface MarkdownBatchSpanGenerator extends MarkdownSpanGenerator {
+    void applySpans(@NotNull SpannableStringBuilder builder, @NotNull MarkdownSpanBatch spans);
+}
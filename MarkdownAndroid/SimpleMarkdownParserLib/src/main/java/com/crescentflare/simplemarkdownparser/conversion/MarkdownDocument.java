@@ -0,0 +1,171 @@
+package com.crescentflare.simplemarkdownparser.conversion;
+
+import com.crescentflare.simplemarkdownparser.tagfinder.MarkdownTag;
+import com.crescentflare.simplemarkdownparser.tagfinder.ProcessedMarkdownTag;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Simple markdown parser library: parsed document
+ * The processed text of a markdown document with its tags, stored in arrays which are never changed after creation
+ * A document can be cached and rendered to HTML or spannable strings by multiple threads at the same time
+ */
+public class MarkdownDocument {
+
+    // --
+    // Constants
+    // --
+
+    private static final MarkdownTag.Type[] TAG_TYPES = MarkdownTag.Type.values();
+
+
+    // --
+    // Members
+    // --
+
+    private final String text;
+    private final byte[] types;
+    private final int[] weights;
+    private final int[] startPositions;
+    private final int[] endPositions;
+    private final int[] counters;
+    private final int[] linkIndices;
+    private final String[] links;
+    private final int[] sectionTagIndices;
+
+
+    // --
+    // Initialization
+    // --
+
+    private MarkdownDocument(String text, List<ProcessedMarkdownTag> tags) {
+        // Count sections and links first to allocate at once
+        int tagCount = tags.size();
+        int sectionCount = 0;
+        int linkCount = 0;
+        for (ProcessedMarkdownTag tag : tags) {
+            if (tag.type.isSection()) {
+                sectionCount++;
+            }
+            if (tag.link != null) {
+                linkCount++;
+            }
+        }
+
+        // Store tag fields, each section tag is followed by the tags within the section
+        this.text = text;
+        types = new byte[tagCount];
+        weights = new int[tagCount];
+        startPositions = new int[tagCount];
+        endPositions = new int[tagCount];
+        counters = new int[tagCount];
+        linkIndices = new int[tagCount];
+        links = new String[linkCount];
+        sectionTagIndices = new int[sectionCount + 1];
+        int sectionIndex = 0;
+        int linkIndex = 0;
+        for (int i = 0; i < tagCount; i++) {
+            ProcessedMarkdownTag tag = tags.get(i);
+            types[i] = (byte)tag.type.ordinal();
+            weights[i] = tag.weight;
+            startPositions[i] = tag.startPosition;
+            endPositions[i] = tag.endPosition;
+            counters[i] = tag.counter;
+            linkIndices[i] = -1;
+            if (tag.link != null) {
+                links[linkIndex] = tag.link;
+                linkIndices[i] = linkIndex++;
+            }
+            if (tag.type.isSection()) {
+                sectionTagIndices[sectionIndex++] = i;
+            }
+        }
+        sectionTagIndices[sectionCount] = tagCount;
+    }
+
+    static MarkdownDocument fromProcessedText(@NotNull String text, @NotNull List<ProcessedMarkdownTag> tags) {
+        return new MarkdownDocument(text, tags);
+    }
+
+
+    // --
+    // Text access
+    // --
+
+    @NotNull public String getText() {
+        return text;
+    }
+
+
+    // --
+    // Section access
+    // --
+
+    public int getSectionCount() {
+        return sectionTagIndices.length - 1;
+    }
+
+    public int getSectionTagIndex(int section) {
+        return sectionTagIndices[section];
+    }
+
+    public int getFirstChildTagIndex(int section) {
+        return sectionTagIndices[section] + 1;
+    }
+
+    public int getEndChildTagIndex(int section) {
+        return sectionTagIndices[section + 1];
+    }
+
+
+    // --
+    // Tag access
+    // --
+
+    public int getTagCount() {
+        return types.length;
+    }
+
+    @NotNull public MarkdownTag.Type getType(int index) {
+        return TAG_TYPES[types[index]];
+    }
+
+    public int getWeight(int index) {
+        return weights[index];
+    }
+
+    public int getStartPosition(int index) {
+        return startPositions[index];
+    }
+
+    public int getEndPosition(int index) {
+        return endPositions[index];
+    }
+
+    public int getCounter(int index) {
+        return counters[index];
+    }
+
+    @Nullable public String getLink(int index) {
+        return linkIndices[index] >= 0 ? links[linkIndices[index]] : null;
+    }
+
+    @NotNull public ProcessedMarkdownTag getTag(int index) {
+        return getTag(index, 0);
+    }
+
+
+    // --
+    // Helpers
+    // --
+
+    @NotNull ProcessedMarkdownTag getTag(int index, int positionOffset) {
+        // Renderers add an offset for the section spacers inserted before the tag
+        ProcessedMarkdownTag tag = new ProcessedMarkdownTag(getType(index), weights[index], startPositions[index] + positionOffset, endPositions[index] + positionOffset, getLink(index));
+        tag.counter = counters[index];
+        return tag;
+    }
+}
@@ -0,0 +1,32 @@
+package com.crescentflare.simplemarkdownparser.conversion;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Simple markdown parser library: heading
+ * A heading extracted from markdown text, positions refer to the heading text within the original markdown
+ * Only escape characters are removed from the text, inline markup is kept (for example "# **a**" gives "**a**")
+ */
+public class MarkdownHeading {
+
+    // --
+    // Members
+    // --
+
+    @NotNull public String text;
+    public int weight;
+    public int startPosition;
+    public int endPosition;
+
+
+    // --
+    // Initialization
+    // --
+
+    public MarkdownHeading(@NotNull String text, int weight, int startPosition, int endPosition) {
+        this.text = text;
+        this.weight = weight;
+        this.startPosition = startPosition;
+        this.endPosition = endPosition;
+    }
+}
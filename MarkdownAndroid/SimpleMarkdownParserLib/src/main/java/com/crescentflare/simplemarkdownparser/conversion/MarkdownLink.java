@@ -0,0 +1,32 @@
+package com.crescentflare.simplemarkdownparser.conversion;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Simple markdown parser library: link
+ * A link extracted from markdown text, positions refer to the link text within the original markdown
+ * Only escape characters are removed from the text, inline markup is kept (for example "[_a_](b)" gives "_a_")
+ */
+public class MarkdownLink {
+
+    // --
+    // Members
+    // --
+
+    @NotNull public String text;
+    @NotNull public String url;
+    public int startPosition;
+    public int endPosition;
+
+
+    // --
+    // Initialization
+    // --
+
+    public MarkdownLink(@NotNull String text, @NotNull String url, int startPosition, int endPosition) {
+        this.text = text;
+        this.url = url;
+        this.startPosition = startPosition;
+        this.endPosition = endPosition;
+    }
+}
@@ -0,0 +1,188 @@
+package com.crescentflare.simplemarkdownparser.conversion;
+
+import com.crescentflare.simplemarkdownparser.symbolfinder.SimpleMarkdownSymbolFinder;
+import com.crescentflare.simplemarkdownparser.symbolfinder.SimpleMarkdownSymbolFinderNative;
+import com.crescentflare.simplemarkdownparser.symbolfinder.SimpleMarkdownSymbolFinderParallel;
+import com.crescentflare.simplemarkdownparser.symbolfinder.SimpleMarkdownSymbolFinderPrimitive;
+import com.crescentflare.simplemarkdownparser.tagfinder.MarkdownTag;
+import com.crescentflare.simplemarkdownparser.tagfinder.MarkdownTagTable;
+import com.crescentflare.simplemarkdownparser.tagfinder.ProcessedMarkdownTag;
+import com.crescentflare.simplemarkdownparser.tagfinder.SimpleMarkdownTagFinder;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Simple markdown parser library: parse workspace
+ * Holds the symbol finders, tag finder and scratch buffers used during conversion so they can be reused between calls
+ * A workspace is not thread-safe, the converter keeps one for each thread when no workspace is given
+ * The finders, tag table and section partition are created on first use, processors used on their own only need the scratch lists
+ */
+public class MarkdownParseWorkspace {
+
+    // --
+    // Constants
+    // --
+
+    private static final int MAX_RETAINED_BUILDER_CAPACITY = 64 * 1024;
+    private static final int MAX_RETAINED_TAG_CAPACITY = 4096;
+    private static final int MAX_RETAINED_SYMBOL_BUFFER_CAPACITY = 64 * 1024;
+    private static final int INITIAL_LIST_WEIGHT_CAPACITY = 16;
+
+
+    // --
+    // Members
+    // --
+
+    final ArrayList<MarkdownTag> sectionTags = new ArrayList<>();
+    final ArrayList<MarkdownTag> innerTags = new ArrayList<>();
+    final ArrayList<ProcessedMarkdownTag> processedInnerTags = new ArrayList<>();
+    final ArrayList<ProcessedMarkdownTag> processedListTags = new ArrayList<>();
+    final ArrayList<SimpleMarkdownHtmlProcessor.MarkdownHtmlTag> htmlTags = new ArrayList<>();
+    final ArrayList<SimpleMarkdownHtmlProcessor.HtmlListRange> htmlListRanges = new ArrayList<>();
+    final ArrayList<SimpleMarkdownHtmlProcessor.HtmlListRange> openHtmlListRanges = new ArrayList<>();
+    int[] listWeightCounter = new int[INITIAL_LIST_WEIGHT_CAPACITY];
+    StringBuilder textBuilder = new StringBuilder();
+    StringBuilder htmlBuilder = new StringBuilder();
+    private SimpleMarkdownTagFinder tagFinder;
+    private MarkdownTagTable tagTable;
+    private MarkdownSectionPartition sectionPartition;
+    private SimpleMarkdownSymbolFinderPrimitive primitiveSymbolFinder;
+    private SimpleMarkdownSymbolFinderNative nativeSymbolFinder;
+    private SimpleMarkdownSymbolFinderParallel parallelSymbolFinder;
+    private ExecutorService parallelSymbolFinderExecutor;
+    private boolean inUse = false;
+
+
+    // --
+    // Usage
+    // --
+
+    public void reset() {
+        // Scratch lists never hold more items than the tags or html tags, they only need to be trimmed after a large document
+        boolean largeDocument = htmlTags.size() > MAX_RETAINED_TAG_CAPACITY;
+        if (tagTable != null) {
+            largeDocument |= tagTable.getCapacity() > MAX_RETAINED_TAG_CAPACITY;
+            tagTable.clearTags();
+        }
+        if (sectionPartition != null) {
+            largeDocument |= sectionPartition.getCapacity() > MAX_RETAINED_TAG_CAPACITY;
+            sectionPartition.clear();
+        }
+
+        // Clear scratch lists
+        resetList(sectionTags, largeDocument);
+        resetList(innerTags, largeDocument);
+        resetList(processedInnerTags, largeDocument);
+        resetList(processedListTags, largeDocument);
+        resetList(htmlTags, largeDocument);
+        resetList(htmlListRanges, largeDocument);
+        resetList(openHtmlListRanges, largeDocument);
+
+        // Don't hold on to memory claimed by a very large document, arrays are only reallocated when they grew beyond the limit
+        if (tagTable != null) {
+            tagTable.trimCapacity(MAX_RETAINED_TAG_CAPACITY);
+        }
+        if (sectionPartition != null) {
+            sectionPartition.trimCapacity(MAX_RETAINED_TAG_CAPACITY);
+        }
+        if (tagFinder != null) {
+            tagFinder.trimCapacity(MAX_RETAINED_TAG_CAPACITY);
+        }
+        if (primitiveSymbolFinder != null) {
+            primitiveSymbolFinder.getSymbolStorage().clearSymbols();
+            primitiveSymbolFinder.trimCapacity(MAX_RETAINED_TAG_CAPACITY);
+        }
+        if (nativeSymbolFinder != null) {
+            nativeSymbolFinder.getSymbolStorage().clearSymbols();
+            nativeSymbolFinder.trimCapacity(MAX_RETAINED_TAG_CAPACITY);
+            nativeSymbolFinder.trimBufferCapacity(MAX_RETAINED_SYMBOL_BUFFER_CAPACITY);
+        }
+        if (parallelSymbolFinder != null) {
+            parallelSymbolFinder.getSymbolStorage().clearSymbols();
+            parallelSymbolFinder.trimCapacity(MAX_RETAINED_TAG_CAPACITY);
+        }
+        if (listWeightCounter.length > MAX_RETAINED_TAG_CAPACITY) {
+            listWeightCounter = new int[INITIAL_LIST_WEIGHT_CAPACITY];
+        }
+        textBuilder = resetBuilder(textBuilder);
+        htmlBuilder = resetBuilder(htmlBuilder);
+    }
+
+    boolean acquire() {
+        if (inUse) {
+            return false;
+        }
+        inUse = true;
+        return true;
+    }
+
+    void release() {
+        reset();
+        inUse = false;
+    }
+
+    @NotNull SimpleMarkdownSymbolFinder getSymbolFinder(boolean useNative) {
+        if (useNative) {
+            if (nativeSymbolFinder == null) {
+                nativeSymbolFinder = new SimpleMarkdownSymbolFinderNative();
+            }
+            return nativeSymbolFinder;
+        }
+        if (primitiveSymbolFinder == null) {
+            primitiveSymbolFinder = new SimpleMarkdownSymbolFinderPrimitive();
+        }
+        return primitiveSymbolFinder;
+    }
+
+    @NotNull SimpleMarkdownSymbolFinder getParallelSymbolFinder(@NotNull ExecutorService executor) {
+        if (parallelSymbolFinder == null || parallelSymbolFinderExecutor != executor) {
+            parallelSymbolFinder = new SimpleMarkdownSymbolFinderParallel(executor);
+            parallelSymbolFinderExecutor = executor;
+        }
+        return parallelSymbolFinder;
+    }
+
+    @NotNull SimpleMarkdownTagFinder getTagFinder() {
+        if (tagFinder == null) {
+            tagFinder = new SimpleMarkdownTagFinder();
+        }
+        return tagFinder;
+    }
+
+    @NotNull MarkdownTagTable getTagTable() {
+        if (tagTable == null) {
+            tagTable = new MarkdownTagTable();
+        }
+        return tagTable;
+    }
+
+    @NotNull MarkdownSectionPartition getSectionPartition() {
+        if (sectionPartition == null) {
+            sectionPartition = new MarkdownSectionPartition();
+        }
+        return sectionPartition;
+    }
+
+
+    // --
+    // Helper
+    // --
+
+    private static void resetList(ArrayList<?> list, boolean trim) {
+        list.clear();
+        if (trim) {
+            list.trimToSize();
+        }
+    }
+
+    private static StringBuilder resetBuilder(StringBuilder builder) {
+        if (builder.capacity() > MAX_RETAINED_BUILDER_CAPACITY) {
+            return new StringBuilder();
+        }
+        builder.setLength(0);
+        return builder;
+    }
+}
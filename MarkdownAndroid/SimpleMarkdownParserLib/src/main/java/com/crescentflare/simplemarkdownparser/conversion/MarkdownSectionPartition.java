@@ -0,0 +1,208 @@
+package com.crescentflare.simplemarkdownparser.conversion;
+
+import com.crescentflare.simplemarkdownparser.tagfinder.MarkdownTagTable;
+import com.crescentflare.simplemarkdownparser.tagfinder.ProcessedMarkdownTag;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Simple markdown parser library: section partition
+ * Splits a list of tags into the inner tags of each section with a single sweep over the tags sorted by position
+ * Inner tags are non-section tags starting and ending within the section, they keep the order of the original list
+ */
+class MarkdownSectionPartition {
+
+    // --
+    // Constants
+    // --
+
+    private static final int INITIAL_CAPACITY = 64;
+
+
+    // --
+    // Members
+    // --
+
+    private int[] startPositions = new int[INITIAL_CAPACITY];
+    private int[] endPositions = new int[INITIAL_CAPACITY];
+    private boolean[] sectionFlags = new boolean[INITIAL_CAPACITY];
+    private int[] sectionTagIndices = new int[INITIAL_CAPACITY];
+    private int[] sortedTagIndices = new int[INITIAL_CAPACITY];
+    private int[] innerTagIndices = new int[INITIAL_CAPACITY];
+    private int[] innerTagStarts = new int[INITIAL_CAPACITY + 1];
+    private long[] sortKeys = new long[0];
+    private int sectionCount = 0;
+
+
+    // --
+    // Partitioning
+    // --
+
+    void partition(@NotNull MarkdownTagTable tags) {
+        int count = tags.size();
+        ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            startPositions[i] = tags.getStartPosition(i);
+            endPositions[i] = tags.getEndPosition(i);
+            sectionFlags[i] = tags.getType(i).isSection();
+        }
+        partitionInternal(count);
+    }
+
+    void partition(@NotNull List<ProcessedMarkdownTag> tags) {
+        int count = tags.size();
+        ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            ProcessedMarkdownTag tag = tags.get(i);
+            startPositions[i] = tag.startPosition;
+            endPositions[i] = tag.endPosition;
+            sectionFlags[i] = tag.type.isSection();
+        }
+        partitionInternal(count);
+    }
+
+    void clear() {
+        sectionCount = 0;
+    }
+
+    void trimCapacity(int maxCapacity) {
+        // Partitioning results are no longer valid after trimming
+        if (startPositions.length > maxCapacity && startPositions.length > INITIAL_CAPACITY) {
+            startPositions = new int[INITIAL_CAPACITY];
+            endPositions = new int[INITIAL_CAPACITY];
+            sectionFlags = new boolean[INITIAL_CAPACITY];
+            sectionTagIndices = new int[INITIAL_CAPACITY];
+            sortedTagIndices = new int[INITIAL_CAPACITY];
+            innerTagStarts = new int[INITIAL_CAPACITY + 1];
+            sectionCount = 0;
+        }
+        if (innerTagIndices.length > maxCapacity && innerTagIndices.length > INITIAL_CAPACITY) {
+            innerTagIndices = new int[INITIAL_CAPACITY];
+            sectionCount = 0;
+        }
+        if (sortKeys.length > maxCapacity) {
+            sortKeys = new long[0];
+        }
+    }
+
+    int getCapacity() {
+        return Math.max(startPositions.length, innerTagIndices.length);
+    }
+
+
+    // --
+    // Access
+    // --
+
+    int getSectionCount() {
+        return sectionCount;
+    }
+
+    int getSectionTagIndex(int section) {
+        return sectionTagIndices[section];
+    }
+
+    int getFirstInnerIndex(int section) {
+        return innerTagStarts[section];
+    }
+
+    int getEndInnerIndex(int section) {
+        return innerTagStarts[section + 1];
+    }
+
+    int getInnerTagIndex(int innerIndex) {
+        return innerTagIndices[innerIndex];
+    }
+
+
+    // --
+    // Helpers
+    // --
+
+    private void partitionInternal(int count) {
+        // Split section tags from the other tags, the other tags are sorted on position (keeping the list order for equal positions)
+        int tagCount = 0;
+        boolean sorted = true;
+        sectionCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (sectionFlags[i]) {
+                sectionTagIndices[sectionCount++] = i;
+            } else {
+                if (tagCount > 0 && startPositions[sortedTagIndices[tagCount - 1]] > startPositions[i]) {
+                    sorted = false;
+                }
+                sortedTagIndices[tagCount++] = i;
+            }
+        }
+        if (!sorted) {
+            sortByPosition(tagCount);
+        }
+
+        // Sweep through the sorted tags, sections are usually sorted so the start of the window only moves forward
+        int innerCount = 0;
+        int cursor = 0;
+        int previousSectionStart = Integer.MIN_VALUE;
+        for (int section = 0; section < sectionCount; section++) {
+            int sectionStart = startPositions[sectionTagIndices[section]];
+            int sectionEnd = endPositions[sectionTagIndices[section]];
+            if (sectionStart < previousSectionStart) {
+                cursor = 0;
+            }
+            previousSectionStart = sectionStart;
+            while (cursor < tagCount && startPositions[sortedTagIndices[cursor]] < sectionStart) {
+                cursor++;
+            }
+            innerTagStarts[section] = innerCount;
+            boolean innerSorted = true;
+            for (int i = cursor; i < tagCount && startPositions[sortedTagIndices[i]] <= sectionEnd; i++) {
+                int tagIndex = sortedTagIndices[i];
+                if (endPositions[tagIndex] <= sectionEnd) {
+                    if (innerCount > innerTagStarts[section] && innerTagIndices[innerCount - 1] > tagIndex) {
+                        innerSorted = false;
+                    }
+                    if (innerCount == innerTagIndices.length) {
+                        innerTagIndices = Arrays.copyOf(innerTagIndices, innerCount * 2);
+                    }
+                    innerTagIndices[innerCount++] = tagIndex;
+                }
+            }
+            if (!innerSorted) {
+                Arrays.sort(innerTagIndices, innerTagStarts[section], innerCount);
+            }
+        }
+        innerTagStarts[sectionCount] = innerCount;
+    }
+
+    private void sortByPosition(int tagCount) {
+        // Combine position and index into one key to sort on both at once, the index is stored in the lower half
+        if (sortKeys.length < tagCount) {
+            sortKeys = new long[sortedTagIndices.length];
+        }
+        for (int i = 0; i < tagCount; i++) {
+            sortKeys[i] = ((long)startPositions[sortedTagIndices[i]] << 32) | sortedTagIndices[i];
+        }
+        Arrays.sort(sortKeys, 0, tagCount);
+        for (int i = 0; i < tagCount; i++) {
+            sortedTagIndices[i] = (int)sortKeys[i];
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        // Inner tags can grow beyond the tag count when sections overlap, their array is grown while partitioning in that case
+        if (capacity > startPositions.length) {
+            int newCapacity = Math.max(capacity, startPositions.length * 2);
+            startPositions = new int[newCapacity];
+            endPositions = new int[newCapacity];
+            sectionFlags = new boolean[newCapacity];
+            sectionTagIndices = new int[newCapacity];
+            sortedTagIndices = new int[newCapacity];
+            innerTagStarts = new int[newCapacity + 1];
+        }
+        if (capacity > innerTagIndices.length) {
+            innerTagIndices = new int[Math.max(capacity, innerTagIndices.length * 2)];
+        }
+    }
+}
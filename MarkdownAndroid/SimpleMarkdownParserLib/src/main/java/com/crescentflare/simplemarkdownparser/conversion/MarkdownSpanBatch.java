@@ -0,0 +1,89 @@
+package com.crescentflare.simplemarkdownparser.conversion;
+
+import com.crescentflare.simplemarkdownparser.tagfinder.MarkdownTag;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Simple markdown parser library: span batch
+ * The spans to apply for one section, in the same order as they would be applied one by one
+ * A batch is reused for the next section after it has been passed to the span generator, don't keep a reference to it
+ */
+public class MarkdownSpanBatch {
+
+    // --
+    // Constants
+    // --
+
+    private static final int INITIAL_CAPACITY = 16;
+
+
+    // --
+    // Members
+    // --
+
+    private MarkdownTag.Type[] types = new MarkdownTag.Type[INITIAL_CAPACITY];
+    private int[] weights = new int[INITIAL_CAPACITY];
+    private int[] startPositions = new int[INITIAL_CAPACITY];
+    private int[] endPositions = new int[INITIAL_CAPACITY];
+    private String[] extras = new String[INITIAL_CAPACITY];
+    private int count = 0;
+
+
+    // --
+    // Storage
+    // --
+
+    void addSpan(@NotNull MarkdownTag.Type type, int weight, int startPosition, int endPosition, @NotNull String extra) {
+        if (count == types.length) {
+            int newCapacity = count * 2;
+            types = Arrays.copyOf(types, newCapacity);
+            weights = Arrays.copyOf(weights, newCapacity);
+            startPositions = Arrays.copyOf(startPositions, newCapacity);
+            endPositions = Arrays.copyOf(endPositions, newCapacity);
+            extras = Arrays.copyOf(extras, newCapacity);
+        }
+        types[count] = type;
+        weights[count] = weight;
+        startPositions[count] = startPosition;
+        endPositions[count] = endPosition;
+        extras[count] = extra;
+        count++;
+    }
+
+    void clear() {
+        Arrays.fill(extras, 0, count, null);
+        count = 0;
+    }
+
+
+    // --
+    // Access
+    // --
+
+    public int size() {
+        return count;
+    }
+
+    @NotNull public MarkdownTag.Type getType(int index) {
+        return types[index];
+    }
+
+    public int getWeight(int index) {
+        return weights[index];
+    }
+
+    public int getStartPosition(int index) {
+        return startPositions[index];
+    }
+
+    public int getEndPosition(int index) {
+        return endPositions[index];
+    }
+
+    @NotNull public String getExtra(int index) {
+        return extras[index];
+    }
+}
@@ -0,0 +1,126 @@
+package com.crescentflare.simplemarkdownparser.conversion;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Simple markdown parser library: UTF-8 output
+ * Encodes text straight from strings into a byte buffer or output stream, pre-encoded bytes are copied as they are
+ * Bytes are collected in a small chunk which is written out when full, call flush when done
+ */
+class MarkdownUtf8Output {
+
+    // --
+    // Constants
+    // --
+
+    private static final int CHUNK_SIZE = 8192;
+    private static final int MAX_CHARACTER_BYTES = 4;
+    private static final byte REPLACEMENT_BYTE = (byte)'?';
+
+
+    // --
+    // Members
+    // --
+
+    private final ByteBuffer buffer;
+    private final OutputStream stream;
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    private int chunkLength = 0;
+
+
+    // --
+    // Initialization
+    // --
+
+    MarkdownUtf8Output(@NotNull ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.stream = null;
+    }
+
+    MarkdownUtf8Output(@NotNull OutputStream stream) {
+        this.buffer = null;
+        this.stream = stream;
+    }
+
+
+    // --
+    // Writing
+    // --
+
+    void writeBytes(@NotNull byte[] bytes, int fromIndex, int toIndex) throws IOException {
+        while (fromIndex < toIndex) {
+            if (chunkLength == CHUNK_SIZE) {
+                writeChunk();
+            }
+            int length = Math.min(toIndex - fromIndex, CHUNK_SIZE - chunkLength);
+            System.arraycopy(bytes, fromIndex, chunk, chunkLength, length);
+            chunkLength += length;
+            fromIndex += length;
+        }
+    }
+
+    void writeText(@NotNull String text, int startPosition, int endPosition) throws IOException {
+        writeText(text, startPosition, endPosition, null);
+    }
+
+    void writeText(@NotNull String text, int startPosition, int endPosition, @Nullable byte[][] replacements) throws IOException {
+        // Encode characters one by one, surrogate pairs become a single 4-byte sequence and unpaired surrogates are replaced (like String.getBytes)
+        // ASCII characters with an entry in the replacement table (if given) are written as the replacement bytes instead
+        for (int i = startPosition; i < endPosition; i++) {
+            if (chunkLength > CHUNK_SIZE - MAX_CHARACTER_BYTES) {
+                writeChunk();
+            }
+            char chr = text.charAt(i);
+            if (chr < 0x80) {
+                if (replacements != null && replacements[chr] != null) {
+                    writeBytes(replacements[chr], 0, replacements[chr].length);
+                } else {
+                    chunk[chunkLength++] = (byte)chr;
+                }
+            } else if (chr < 0x800) {
+                chunk[chunkLength++] = (byte)(0xC0 | (chr >> 6));
+                chunk[chunkLength++] = (byte)(0x80 | (chr & 0x3F));
+            } else if (Character.isHighSurrogate(chr) && i + 1 < endPosition && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(chr, text.charAt(++i));
+                chunk[chunkLength++] = (byte)(0xF0 | (codePoint >> 18));
+                chunk[chunkLength++] = (byte)(0x80 | ((codePoint >> 12) & 0x3F));
+                chunk[chunkLength++] = (byte)(0x80 | ((codePoint >> 6) & 0x3F));
+                chunk[chunkLength++] = (byte)(0x80 | (codePoint & 0x3F));
+            } else if (chr >= Character.MIN_SURROGATE && chr <= Character.MAX_SURROGATE) {
+                chunk[chunkLength++] = REPLACEMENT_BYTE;
+            } else {
+                chunk[chunkLength++] = (byte)(0xE0 | (chr >> 12));
+                chunk[chunkLength++] = (byte)(0x80 | ((chr >> 6) & 0x3F));
+                chunk[chunkLength++] = (byte)(0x80 | (chr & 0x3F));
+            }
+        }
+    }
+
+    void flush() throws IOException {
+        writeChunk();
+        if (stream != null) {
+            stream.flush();
+        }
+    }
+
+
+    // --
+    // Helper
+    // --
+
+    private void writeChunk() throws IOException {
+        if (chunkLength > 0) {
+            if (buffer != null) {
+                buffer.put(chunk, 0, chunkLength);
+            } else if (stream != null) {
+                stream.write(chunk, 0, chunkLength);
+            }
+            chunkLength = 0;
+        }
+    }
+}
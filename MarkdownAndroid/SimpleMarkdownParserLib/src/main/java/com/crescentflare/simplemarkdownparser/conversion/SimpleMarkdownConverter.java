@@ -4,15 +4,27 @@ import android.text.SpannableStringBuilder;
 import android.text.Spanned;
 
 import com.crescentflare.simplemarkdownparser.symbolfinder.SimpleMarkdownSymbolFinder;
-import com.crescentflare.simplemarkdownparser.symbolfinder.SimpleMarkdownSymbolFinderJava;
 import com.crescentflare.simplemarkdownparser.symbolfinder.SimpleMarkdownSymbolFinderNative;
+import com.crescentflare.simplemarkdownparser.symbolfinder.SimpleMarkdownSymbolFinderParallel;
+import com.crescentflare.simplemarkdownparser.symbolfinder.SimpleMarkdownSymbolFinderPrimitive;
+import com.crescentflare.simplemarkdownparser.symbolfinder.SimpleMarkdownSymbolStorage;
 import com.crescentflare.simplemarkdownparser.tagfinder.MarkdownTag;
 import com.crescentflare.simplemarkdownparser.tagfinder.ProcessedMarkdownTag;
-import com.crescentflare.simplemarkdownparser.tagfinder.SimpleMarkdownTagFinder;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Simple markdown parser library: markdown text converter
@@ -21,10 +33,46 @@ import java.util.List;
 public class SimpleMarkdownConverter {
 
     // --
-    // Static member to determine availability of the native core symbol finder implementation
+    // Static members to determine availability of the native core symbol finder implementation and when to use it
     // --
 
-    private static int nativeParserLibraryLoaded = 0;
+    private static final int DEFAULT_NATIVE_THRESHOLD = 128;
+    private static final int[] CALIBRATION_LENGTHS = new int[] { 32, 64, 128, 256, 512, 1024, 2048, 4096, 8192 };
+    private static final int CALIBRATION_SCAN_SIZE = 32768;
+    private static final int CALIBRATION_RUNS = 5;
+    private static final String CALIBRATION_TEXT = "## Calibration header\nSome text with **bold**, _italics_ and ~~strike through~~ styling, also \\*escaped\\* characters.\n\n* A list item with a [link](https://www.github.com \"Link title\")\n  1. Nested item\n\n";
+    private static final Object calibrationLock = new Object();
+    private static volatile int calibratedNativeThreshold = -1;
+    private static volatile SymbolFinderStrategy symbolFinderStrategy = SymbolFinderStrategy.FixedThreshold;
+    private static volatile int fixedNativeThreshold = DEFAULT_NATIVE_THRESHOLD;
+
+
+    // --
+    // Static members for scanning and converting large texts in parallel
+    // --
+
+    private static final int DEFAULT_PARALLEL_SCAN_THRESHOLD = 256 * 1024;
+    private static volatile ExecutorService parallelScanExecutor = null;
+    private static volatile int parallelScanThreshold = DEFAULT_PARALLEL_SCAN_THRESHOLD;
+
+
+    // --
+    // Static member to escape text and links in HTML output
+    // --
+
+    private static volatile boolean htmlEscaping = false;
+
+
+    // --
+    // Static member to reuse a workspace for each thread
+    // --
+
+    private static final ThreadLocal<MarkdownParseWorkspace> threadWorkspace = new ThreadLocal<MarkdownParseWorkspace>() {
+        @Override
+        protected MarkdownParseWorkspace initialValue() {
+            return new MarkdownParseWorkspace();
+        }
+    };
 
 
     // --
@@ -32,18 +80,262 @@ public class SimpleMarkdownConverter {
     // --
 
     @NotNull public static String toHtmlString(@NotNull String markdownText) {
-        // Find symbols
-        SimpleMarkdownSymbolFinder symbolFinder = obtainSymbolFinder(markdownText);
-        symbolFinder.scanText(markdownText);
+        return toHtmlString(markdownText, threadWorkspace.get());
+    }
 
-        // Find tags from symbols and process text
-        SimpleMarkdownTagFinder tagFinder = new SimpleMarkdownTagFinder();
-        List<MarkdownTag> tags = tagFinder.findTags(markdownText, symbolFinder.getSymbolStorage().symbols);
-        SimpleMarkdownTextProcessor processor = SimpleMarkdownTextProcessor.process(markdownText, tags);
+    @NotNull public static String toHtmlString(@NotNull String markdownText, @NotNull MarkdownParseWorkspace workspace) {
+        ExecutorService executor = parallelScanExecutor;
+        if (executor != null && markdownText.length() >= parallelScanThreshold) {
+            return toHtmlStringParallel(markdownText, workspace, executor, Runtime.getRuntime().availableProcessors(), SimpleMarkdownSymbolFinderParallel.DEFAULT_MINIMUM_PART_SIZE);
+        }
+        workspace = acquireWorkspace(workspace);
+        try {
+            // Find symbols
+            SimpleMarkdownSymbolFinder symbolFinder = obtainSymbolFinder(markdownText, workspace);
+            symbolFinder.scanText(markdownText);
 
-        // Process HTML
-        SimpleMarkdownHtmlProcessor htmlProcessor = SimpleMarkdownHtmlProcessor.process(processor.text, processor.tags);
-        return htmlProcessor.text;
+            // Find tags from symbols and process text
+            workspace.getTagFinder().findTagTable(markdownText, symbolFinder.getSymbolStorage(), workspace.getTagTable());
+            SimpleMarkdownTextProcessor processor = SimpleMarkdownTextProcessor.process(markdownText, workspace.getTagTable(), null, workspace);
+
+            // Process HTML
+            SimpleMarkdownHtmlProcessor htmlProcessor = SimpleMarkdownHtmlProcessor.process(processor.text, processor.tags, htmlEscaping, workspace);
+            return htmlProcessor.text;
+        } finally {
+            workspace.release();
+        }
+    }
+
+
+    // --
+    // HTML writing handling
+    // --
+
+    public static void writeHtml(@NotNull String markdownText, @NotNull Appendable output) throws IOException {
+        writeHtml(markdownText, output, threadWorkspace.get());
+    }
+
+    public static void writeHtml(@NotNull String markdownText, @NotNull Appendable output, @NotNull MarkdownParseWorkspace workspace) throws IOException {
+        // Large texts are converted in parts when parallel conversion is enabled, the parts are written one after the other
+        ExecutorService executor = parallelScanExecutor;
+        if (executor != null && markdownText.length() >= parallelScanThreshold) {
+            List<String> parts = toHtmlParts(markdownText, workspace, executor, Runtime.getRuntime().availableProcessors(), SimpleMarkdownSymbolFinderParallel.DEFAULT_MINIMUM_PART_SIZE, htmlEscaping);
+            for (int i = 0; i < parts.size(); i++) {
+                if (i > 0) {
+                    output.append('\n');
+                }
+                output.append(parts.get(i));
+            }
+            return;
+        }
+        workspace = acquireWorkspace(workspace);
+        try {
+            // Find symbols
+            SimpleMarkdownSymbolFinder symbolFinder = obtainSymbolFinder(markdownText, workspace);
+            symbolFinder.scanText(markdownText);
+
+            // Find tags from symbols and process text
+            workspace.getTagFinder().findTagTable(markdownText, symbolFinder.getSymbolStorage(), workspace.getTagTable());
+            SimpleMarkdownTextProcessor processor = SimpleMarkdownTextProcessor.process(markdownText, workspace.getTagTable(), null, workspace);
+
+            // Write HTML
+            SimpleMarkdownHtmlProcessor.writeHtml(processor.text, processor.tags, output, htmlEscaping, workspace);
+        } finally {
+            workspace.release();
+        }
+    }
+
+
+    public static void writeHtmlUtf8(@NotNull String markdownText, @NotNull OutputStream output) throws IOException {
+        writeHtmlUtf8(markdownText, new MarkdownUtf8Output(output), threadWorkspace.get());
+    }
+
+    public static void writeHtmlUtf8(@NotNull String markdownText, @NotNull ByteBuffer output) {
+        // Throws a buffer overflow exception when the buffer has no room left, like the put methods of the buffer
+        try {
+            writeHtmlUtf8(markdownText, new MarkdownUtf8Output(output), threadWorkspace.get());
+        } catch (IOException e) {
+            // Writing to a byte buffer doesn't throw I/O exceptions
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void writeHtmlUtf8(String markdownText, MarkdownUtf8Output output, MarkdownParseWorkspace workspace) throws IOException {
+        // Large texts are converted in parts when parallel conversion is enabled, the parts are encoded one after the other
+        ExecutorService executor = parallelScanExecutor;
+        if (executor != null && markdownText.length() >= parallelScanThreshold) {
+            List<String> parts = toHtmlParts(markdownText, workspace, executor, Runtime.getRuntime().availableProcessors(), SimpleMarkdownSymbolFinderParallel.DEFAULT_MINIMUM_PART_SIZE, htmlEscaping);
+            for (int i = 0; i < parts.size(); i++) {
+                if (i > 0) {
+                    output.writeText("\n", 0, 1);
+                }
+                output.writeText(parts.get(i), 0, parts.get(i).length());
+            }
+            output.flush();
+            return;
+        }
+        workspace = acquireWorkspace(workspace);
+        try {
+            // Find symbols
+            SimpleMarkdownSymbolFinder symbolFinder = obtainSymbolFinder(markdownText, workspace);
+            symbolFinder.scanText(markdownText);
+
+            // Find tags from symbols and process text
+            workspace.getTagFinder().findTagTable(markdownText, symbolFinder.getSymbolStorage(), workspace.getTagTable());
+            SimpleMarkdownTextProcessor processor = SimpleMarkdownTextProcessor.process(markdownText, workspace.getTagTable(), null, workspace);
+
+            // Write HTML as UTF-8 bytes
+            SimpleMarkdownHtmlProcessor.writeHtmlUtf8(processor.text, processor.tags, output, htmlEscaping, workspace);
+        } finally {
+            workspace.release();
+        }
+    }
+
+
+    // --
+    // HTML conversion of large texts in parallel
+    // --
+
+    @NotNull static String toHtmlStringParallel(@NotNull String markdownText, @NotNull MarkdownParseWorkspace workspace, @NotNull ExecutorService executor, int maximumParts, int minimumPartSize) {
+        // Join parts with a newline, the same as the text processor does between sections
+        List<String> parts = toHtmlParts(markdownText, workspace, executor, maximumParts, minimumPartSize, htmlEscaping);
+        int length = parts.size() - 1;
+        for (String part : parts) {
+            length += part.length();
+        }
+        StringBuilder result = new StringBuilder(length);
+        for (int i = 0; i < parts.size(); i++) {
+            if (i > 0) {
+                result.append('\n');
+            }
+            result.append(parts.get(i));
+        }
+        return result.toString();
+    }
+
+    private static List<String> toHtmlParts(final String markdownText, MarkdownParseWorkspace workspace, ExecutorService executor, int maximumParts, int minimumPartSize, final boolean escapeHtml) {
+        workspace = acquireWorkspace(workspace);
+        try {
+            // Find symbols and split the text into parts of whole sections, sections are converted independently of each other
+            SimpleMarkdownSymbolFinder symbolFinder = workspace.getParallelSymbolFinder(executor);
+            symbolFinder.scanText(markdownText);
+            final SimpleMarkdownSymbolStorage symbols = symbolFinder.getSymbolStorage();
+            final int[] partPositions = findPartPositions(markdownText.length(), workspace.getTagFinder().findSectionPositions(symbols), maximumParts, minimumPartSize);
+            int partCount = partPositions.length - 1;
+
+            // Convert all parts except the first one on the executor, each with its own workspace, the first part is converted on the calling thread
+            List<FutureTask<String>> tasks = new ArrayList<>();
+            for (int i = 1; i < partCount; i++) {
+                final int startPosition = partPositions[i];
+                final int endPosition = partPositions[i + 1];
+                FutureTask<String> task = new FutureTask<>(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        MarkdownParseWorkspace partWorkspace = acquireWorkspace(threadWorkspace.get());
+                        try {
+                            return toHtmlStringPart(markdownText, symbols, startPosition, endPosition, escapeHtml, partWorkspace);
+                        } finally {
+                            partWorkspace.release();
+                        }
+                    }
+                });
+                tasks.add(task);
+                try {
+                    executor.execute(task);
+                } catch (RejectedExecutionException ignored) {
+                    // The task is run on the calling thread while waiting for the parts
+                }
+            }
+            String firstPart = toHtmlStringPart(markdownText, symbols, 0, partPositions[1], escapeHtml, workspace);
+            List<String> result = new ArrayList<>(partCount);
+            result.add(firstPart);
+            result.addAll(waitForParts(tasks));
+            return result;
+        } finally {
+            workspace.release();
+        }
+    }
+
+    private static String toHtmlStringPart(String markdownText, SimpleMarkdownSymbolStorage symbols, int startPosition, int endPosition, boolean escapeHtml, MarkdownParseWorkspace workspace) {
+        // Copy the symbols of the part, with positions and lines relative to the start of the part
+        String partText = markdownText.substring(startPosition, endPosition);
+        int fromIndex = findFirstSymbolIndex(symbols, startPosition);
+        int toIndex = findFirstSymbolIndex(symbols, endPosition);
+        SimpleMarkdownSymbolStorage partSymbols = new SimpleMarkdownSymbolStorage();
+        if (toIndex > fromIndex) {
+            partSymbols.appendSymbols(symbols, fromIndex, toIndex, -startPosition, -symbols.getLine(fromIndex));
+        }
+
+        // Convert the part like a separate document
+        workspace.getTagFinder().findTagTable(partText, partSymbols, workspace.getTagTable());
+        SimpleMarkdownTextProcessor processor = SimpleMarkdownTextProcessor.process(partText, workspace.getTagTable(), null, workspace);
+        return SimpleMarkdownHtmlProcessor.process(processor.text, processor.tags, escapeHtml, workspace).text;
+    }
+
+    private static int[] findPartPositions(int length, int[] sectionPositions, int maximumParts, int minimumPartSize) {
+        // Split at the first section after each target position, the first part always keeps the first section
+        int partCount = (int)Math.max(1, Math.min(Math.max(1, maximumParts), (long)length / Math.max(1, minimumPartSize)));
+        int[] positions = new int[partCount + 1];
+        int foundParts = 1;
+        int sectionIndex = 1;
+        for (int i = 1; i < partCount; i++) {
+            long targetPosition = (long)length * i / partCount;
+            while (sectionIndex < sectionPositions.length && sectionPositions[sectionIndex] < targetPosition) {
+                sectionIndex++;
+            }
+            if (sectionIndex >= sectionPositions.length) {
+                break;
+            }
+            positions[foundParts++] = sectionPositions[sectionIndex++];
+        }
+        positions[foundParts] = length;
+        return Arrays.copyOf(positions, foundParts + 1);
+    }
+
+    private static int findFirstSymbolIndex(SimpleMarkdownSymbolStorage symbols, int position) {
+        // Binary search for the first symbol starting at or after the given position
+        int low = 0;
+        int high = symbols.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (symbols.getStartPosition(middle) < position) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static List<String> waitForParts(List<FutureTask<String>> tasks) {
+        // Wait for all parts, also when one of them fails, then report the first failure
+        // Tasks which didn't start yet are run on the calling thread (running a started or finished task does nothing)
+        List<String> result = new ArrayList<>(tasks.size());
+        RuntimeException failure = null;
+        boolean interrupted = false;
+        for (FutureTask<String> task : tasks) {
+            task.run();
+            while (true) {
+                try {
+                    result.add(task.get());
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof RuntimeException ? (RuntimeException)e.getCause() : new RuntimeException(e.getCause());
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return result;
     }
 
 
@@ -56,70 +348,376 @@ public class SimpleMarkdownConverter {
     }
 
     @NotNull public static Spanned toSpannable(@NotNull String markdownText, @NotNull MarkdownSpanGenerator spanGenerator) {
-        // Find symbols
-        SimpleMarkdownSymbolFinder symbolFinder = obtainSymbolFinder(markdownText);
-        symbolFinder.scanText(markdownText);
-
-        // Find tags from symbols and process text
-        SimpleMarkdownTagFinder tagFinder = new SimpleMarkdownTagFinder();
-        List<MarkdownTag> tags = tagFinder.findTags(markdownText, symbolFinder.getSymbolStorage().symbols);
-        SimpleMarkdownTextProcessor processor = SimpleMarkdownTextProcessor.process(markdownText, tags, spanGenerator);
-        processor.rearrangeNestedTextStyles();
+        return toSpannable(markdownText, spanGenerator, threadWorkspace.get());
+    }
 
-        // Set up spannable
+    @NotNull public static Spanned toSpannable(@NotNull String markdownText, @NotNull MarkdownSpanGenerator spanGenerator, @NotNull MarkdownParseWorkspace workspace) {
+        SimpleMarkdownTextProcessor processor = processSpannable(markdownText, spanGenerator, workspace);
         SpannableStringBuilder spannableString = new SpannableStringBuilder(processor.text);
-        for (int index = 0; index < processor.tags.size(); index++) {
+        applySpans(spannableString, processor.tags, spanGenerator);
+        return spannableString;
+    }
+
+    @NotNull static SimpleMarkdownTextProcessor processSpannable(@NotNull String markdownText, @NotNull MarkdownSpanGenerator spanGenerator, @NotNull MarkdownParseWorkspace workspace) {
+        // Find symbols and tags, the workspace is released before applying spans (span generators may convert markdown themselves)
+        workspace = acquireWorkspace(workspace);
+        try {
+            SimpleMarkdownSymbolFinder symbolFinder = obtainSymbolFinder(markdownText, workspace);
+            symbolFinder.scanText(markdownText);
+            workspace.getTagFinder().findTagTable(markdownText, symbolFinder.getSymbolStorage(), workspace.getTagTable());
+            SimpleMarkdownTextProcessor processor = SimpleMarkdownTextProcessor.process(markdownText, workspace.getTagTable(), spanGenerator, workspace);
+            processor.rearrangeNestedTextStyles();
+            return processor;
+        } finally {
+            workspace.release();
+        }
+    }
+
+    static void applySpans(SpannableStringBuilder spannableString, @NotNull List<ProcessedMarkdownTag> tags, @NotNull MarkdownSpanGenerator spanGenerator) {
+        // Apply spans in one pass, keep track of the previous section and look ahead to the next one for section spacers
+        // The spannable is only passed to the span generator, so the span order can be checked without creating android classes
+        MarkdownBatchSpanGenerator batchSpanGenerator = spanGenerator instanceof MarkdownBatchSpanGenerator ? (MarkdownBatchSpanGenerator)spanGenerator : null;
+        MarkdownSpanBatch spanBatch = batchSpanGenerator != null ? new MarkdownSpanBatch() : null;
+        ProcessedMarkdownTag previousSectionTag = null;
+        int nextSectionIndex = 0;
+        for (int index = 0; index < tags.size(); index++) {
+            // Send the spans collected so far when a new section (or section spacer) starts
+            ProcessedMarkdownTag tag = tags.get(index);
+            if (tag.type.isSection() || tag.type == MarkdownTag.Type.SectionSpacer) {
+                applyBatchedSpans(spannableString, batchSpanGenerator, spanBatch);
+            }
+
             // Handle section spacer
-            ProcessedMarkdownTag tag = processor.tags.get(index);
             if (tag.type == MarkdownTag.Type.SectionSpacer) {
-                MarkdownTag.Type previousSectionTagType = null;
-                MarkdownTag.Type nextSectionTagType = null;
-                int previousSectionWeight = 0;
-                int nextSectionWeight = 0;
-                for (int checkIndex = 0; checkIndex < processor.tags.size(); checkIndex++) {
-                    ProcessedMarkdownTag checkTag = processor.tags.get(checkIndex);
-                    if (checkTag.type.isSection()) {
-                        if (checkIndex < index) {
-                            previousSectionTagType = checkTag.type;
-                            previousSectionWeight = checkTag.weight;
-                        } else if (checkIndex > index) {
-                            nextSectionTagType = checkTag.type;
-                            nextSectionWeight = checkTag.weight;
-                            break;
-                        }
-                    }
+                nextSectionIndex = Math.max(nextSectionIndex, index + 1);
+                while (nextSectionIndex < tags.size() && !tags.get(nextSectionIndex).type.isSection()) {
+                    nextSectionIndex++;
                 }
-                if (previousSectionTagType != null && nextSectionTagType != null) {
-                    spanGenerator.applySectionSpacerSpan(spannableString, previousSectionTagType, previousSectionWeight, nextSectionTagType, nextSectionWeight, tag.startPosition, tag.endPosition);
+                if (previousSectionTag != null && nextSectionIndex < tags.size()) {
+                    ProcessedMarkdownTag nextSectionTag = tags.get(nextSectionIndex);
+                    spanGenerator.applySectionSpacerSpan(spannableString, previousSectionTag.type, previousSectionTag.weight, nextSectionTag.type, nextSectionTag.weight, tag.startPosition, tag.endPosition);
                 }
+            } else if (tag.type.isSection()) {
+                previousSectionTag = tag;
             }
 
-            // Apply span from tag
-            String extra = "";
-            if (tag.type == MarkdownTag.Type.OrderedListItem || tag.type == MarkdownTag.Type.UnorderedListItem) {
-                extra = spanGenerator.getListToken(tag.type, tag.weight, tag.counter);
-            } else if (tag.link != null) {
-                extra = tag.link;
-            }
+            // Apply span from tag, or add it to the batch
+            applySpan(spannableString, tag, spanGenerator, spanBatch);
+        }
+        applyBatchedSpans(spannableString, batchSpanGenerator, spanBatch);
+    }
+
+    private static void applySpan(SpannableStringBuilder spannableString, ProcessedMarkdownTag tag, MarkdownSpanGenerator spanGenerator, MarkdownSpanBatch spanBatch) {
+        String extra = "";
+        if (tag.type == MarkdownTag.Type.OrderedListItem || tag.type == MarkdownTag.Type.UnorderedListItem) {
+            extra = spanGenerator.getListToken(tag.type, tag.weight, tag.counter);
+        } else if (tag.link != null) {
+            extra = tag.link;
+        }
+        if (spanBatch != null) {
+            spanBatch.addSpan(tag.type, tag.weight, tag.startPosition, tag.endPosition, extra);
+        } else {
             spanGenerator.applySpan(spannableString, tag.type, tag.weight, tag.startPosition, tag.endPosition, extra);
         }
+    }
+
+    private static void applyBatchedSpans(SpannableStringBuilder spannableString, MarkdownBatchSpanGenerator batchSpanGenerator, MarkdownSpanBatch spanBatch) {
+        if (batchSpanGenerator != null && spanBatch.size() > 0) {
+            batchSpanGenerator.applySpans(spannableString, spanBatch);
+            spanBatch.clear();
+        }
+    }
+
+
+    // --
+    // Document conversion handling
+    // --
+
+    @NotNull public static MarkdownDocument toDocument(@NotNull String markdownText) {
+        return toDocument(markdownText, threadWorkspace.get());
+    }
+
+    @NotNull public static MarkdownDocument toDocument(@NotNull String markdownText, @NotNull MarkdownParseWorkspace workspace) {
+        // List items are counted for spannable strings, section spacers are added when rendering
+        workspace = acquireWorkspace(workspace);
+        try {
+            SimpleMarkdownSymbolFinder symbolFinder = obtainSymbolFinder(markdownText, workspace);
+            symbolFinder.scanText(markdownText);
+            workspace.getTagFinder().findTagTable(markdownText, symbolFinder.getSymbolStorage(), workspace.getTagTable());
+            SimpleMarkdownTextProcessor processor = SimpleMarkdownTextProcessor.process(markdownText, workspace.getTagTable(), true, false, workspace);
+            return MarkdownDocument.fromProcessedText(processor.text, processor.tags);
+        } finally {
+            workspace.release();
+        }
+    }
+
+    @NotNull public static String toHtmlString(@NotNull MarkdownDocument document) {
+        MarkdownParseWorkspace workspace = acquireWorkspace(threadWorkspace.get());
+        try {
+            return SimpleMarkdownHtmlProcessor.process(document, htmlEscaping, workspace).text;
+        } finally {
+            workspace.release();
+        }
+    }
+
+    public static void writeHtml(@NotNull MarkdownDocument document, @NotNull Appendable output) throws IOException {
+        MarkdownParseWorkspace workspace = acquireWorkspace(threadWorkspace.get());
+        try {
+            SimpleMarkdownHtmlProcessor.writeHtml(document, output, htmlEscaping, workspace);
+        } finally {
+            workspace.release();
+        }
+    }
+
+    public static void writeHtmlUtf8(@NotNull MarkdownDocument document, @NotNull OutputStream output) throws IOException {
+        writeHtmlUtf8(document, new MarkdownUtf8Output(output));
+    }
+
+    public static void writeHtmlUtf8(@NotNull MarkdownDocument document, @NotNull ByteBuffer output) {
+        try {
+            writeHtmlUtf8(document, new MarkdownUtf8Output(output));
+        } catch (IOException e) {
+            // Writing to a byte buffer doesn't throw I/O exceptions
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void writeHtmlUtf8(MarkdownDocument document, MarkdownUtf8Output output) throws IOException {
+        MarkdownParseWorkspace workspace = acquireWorkspace(threadWorkspace.get());
+        try {
+            SimpleMarkdownHtmlProcessor.writeHtmlUtf8(document, output, htmlEscaping, workspace);
+        } finally {
+            workspace.release();
+        }
+    }
+
+    @NotNull public static Spanned toSpannable(@NotNull MarkdownDocument document) {
+        return toSpannable(document, new DefaultMarkdownSpanGenerator());
+    }
+
+    @NotNull public static Spanned toSpannable(@NotNull MarkdownDocument document, @NotNull MarkdownSpanGenerator spanGenerator) {
+        SpannableStringBuilder spannableString = new SpannableStringBuilder(getSpannableText(document));
+        applySpans(spannableString, document, spanGenerator);
         return spannableString;
     }
 
+    @NotNull static String getSpannableText(@NotNull MarkdownDocument document) {
+        // Sections are separated by an extra newline with a spacer span, the text is complete before applying spans
+        String text = document.getText();
+        int sectionCount = document.getSectionCount();
+        StringBuilder spacedText = new StringBuilder(text.length() + sectionCount);
+        int position = 0;
+        for (int section = 0; section + 1 < sectionCount; section++) {
+            int sectionEndPosition = document.getEndPosition(document.getSectionTagIndex(section));
+            spacedText.append(text, position, sectionEndPosition).append('\n');
+            position = sectionEndPosition;
+        }
+        spacedText.append(text, position, text.length());
+        return spacedText.toString();
+    }
+
+    static void applySpans(SpannableStringBuilder spannableString, @NotNull MarkdownDocument document, @NotNull MarkdownSpanGenerator spanGenerator) {
+        // Apply spans for each section, tag objects are only created for the section being applied (moved along with the spacers before it)
+        int sectionCount = document.getSectionCount();
+        MarkdownBatchSpanGenerator batchSpanGenerator = spanGenerator instanceof MarkdownBatchSpanGenerator ? (MarkdownBatchSpanGenerator)spanGenerator : null;
+        MarkdownSpanBatch spanBatch = batchSpanGenerator != null ? new MarkdownSpanBatch() : null;
+        List<ProcessedMarkdownTag> sectionTags = new ArrayList<>();
+        for (int section = 0; section < sectionCount; section++) {
+            sectionTags.clear();
+            for (int index = document.getSectionTagIndex(section); index < document.getEndChildTagIndex(section); index++) {
+                sectionTags.add(document.getTag(index, section));
+            }
+            applyBatchedSpans(spannableString, batchSpanGenerator, spanBatch);
+            for (ProcessedMarkdownTag tag : SimpleMarkdownTextProcessor.rearrangeNestedTextStyles(sectionTags)) {
+                applySpan(spannableString, tag, spanGenerator, spanBatch);
+            }
+            if (section + 1 < sectionCount) {
+                int sectionTagIndex = document.getSectionTagIndex(section);
+                int nextSectionTagIndex = document.getSectionTagIndex(section + 1);
+                int spacerPosition = document.getEndPosition(sectionTagIndex) + section + 1;
+                applyBatchedSpans(spannableString, batchSpanGenerator, spanBatch);
+                spanGenerator.applySectionSpacerSpan(spannableString, document.getType(sectionTagIndex), document.getWeight(sectionTagIndex), document.getType(nextSectionTagIndex), document.getWeight(nextSectionTagIndex), spacerPosition, spacerPosition + 1);
+                applySpan(spannableString, new ProcessedMarkdownTag(MarkdownTag.Type.SectionSpacer, 0, spacerPosition, spacerPosition + 1), spanGenerator, spanBatch);
+            }
+        }
+        applyBatchedSpans(spannableString, batchSpanGenerator, spanBatch);
+    }
+
+
+    // --
+    // Symbol finder strategy configuration
+    // --
+
+    public static void setSymbolFinderStrategy(@NotNull SymbolFinderStrategy strategy) {
+        symbolFinderStrategy = strategy;
+    }
+
+    @NotNull public static SymbolFinderStrategy getSymbolFinderStrategy() {
+        return symbolFinderStrategy;
+    }
+
+    public static void setFixedNativeThreshold(int length) {
+        fixedNativeThreshold = Math.max(0, length);
+    }
+
+    public static int getFixedNativeThreshold() {
+        return fixedNativeThreshold;
+    }
+
+    public static int getCalibratedNativeThreshold() {
+        return calibratedNativeThreshold;
+    }
+
+    public static int calibrate() {
+        // Run the calibration ahead of time (for example from a background thread on startup) to avoid a delay on the first conversion
+        if (!isNativeSymbolFinderAvailable()) {
+            return Integer.MAX_VALUE;
+        }
+        return calibrateNativeThreshold();
+    }
+
+    public static int getNativeThreshold() {
+        if (!isNativeSymbolFinderAvailable()) {
+            return Integer.MAX_VALUE;
+        }
+        switch (symbolFinderStrategy) {
+            case AlwaysJava:
+                return Integer.MAX_VALUE;
+            case AlwaysNative:
+                return 0;
+            case AutoCalibrated:
+                return calibrateNativeThreshold();
+            default:
+                return fixedNativeThreshold;
+        }
+    }
+
+    public static void setParallelScanExecutor(@Nullable ExecutorService executor) {
+        // Parts which the executor didn't start yet are processed on the calling thread, so conversions can also run on this executor
+        parallelScanExecutor = executor;
+    }
+
+    @Nullable public static ExecutorService getParallelScanExecutor() {
+        return parallelScanExecutor;
+    }
+
+    public static void setParallelScanThreshold(int length) {
+        parallelScanThreshold = Math.max(0, length);
+    }
+
+    public static int getParallelScanThreshold() {
+        return parallelScanThreshold;
+    }
+
+    public static void setHtmlEscaping(boolean enabled) {
+        // When enabled, HTML special characters in the text and link values are escaped while writing HTML output
+        htmlEscaping = enabled;
+    }
+
+    public static boolean isHtmlEscaping() {
+        return htmlEscaping;
+    }
+
+    public static boolean isNativeSymbolFinderAvailable() {
+        return NativeLibraryHolder.AVAILABLE;
+    }
+
 
     // --
     // Obtain symbol finder instance based on requirements
     // --
 
-    private static SimpleMarkdownSymbolFinder obtainSymbolFinder(String text) {
-        if (nativeParserLibraryLoaded == 0) {
+    private static SimpleMarkdownSymbolFinder obtainSymbolFinder(String text, MarkdownParseWorkspace workspace) {
+        ExecutorService executor = parallelScanExecutor;
+        if (executor != null && text.length() >= parallelScanThreshold) {
+            return workspace.getParallelSymbolFinder(executor);
+        }
+        return workspace.getSymbolFinder(text.length() > getNativeThreshold());
+    }
+
+
+    // --
+    // Workspace handling
+    // --
+
+    private static MarkdownParseWorkspace acquireWorkspace(MarkdownParseWorkspace workspace) {
+        // Fall back to a temporary workspace when it's already in use (when converting recursively)
+        if (!workspace.acquire()) {
+            workspace = new MarkdownParseWorkspace();
+            workspace.acquire();
+        }
+        return workspace;
+    }
+
+
+    // --
+    // Calibration of the text length from which the native symbol finder is faster
+    // --
+
+    private static int calibrateNativeThreshold() {
+        // Only lock when the threshold isn't calibrated yet, other threads wait for the running calibration to finish
+        int threshold = calibratedNativeThreshold;
+        if (threshold >= 0) {
+            return threshold;
+        }
+        synchronized (calibrationLock) {
+            if (calibratedNativeThreshold >= 0) {
+                return calibratedNativeThreshold;
+            }
+
+            // Prepare synthetic markdown text which is long enough for all lengths
+            StringBuilder calibrationText = new StringBuilder();
+            int maxLength = CALIBRATION_LENGTHS[CALIBRATION_LENGTHS.length - 1];
+            while (calibrationText.length() < maxLength) {
+                calibrationText.append(CALIBRATION_TEXT);
+            }
+
+            // Use native from the length after the last one where java was at least as fast, never use it if java wins for long texts
+            SimpleMarkdownSymbolFinder javaSymbolFinder = new SimpleMarkdownSymbolFinderPrimitive();
+            SimpleMarkdownSymbolFinder nativeSymbolFinder = new SimpleMarkdownSymbolFinderNative();
+            threshold = 0;
+            for (int length : CALIBRATION_LENGTHS) {
+                String text = calibrationText.substring(0, length);
+                if (measureScanTime(javaSymbolFinder, text) <= measureScanTime(nativeSymbolFinder, text)) {
+                    threshold = length == maxLength ? Integer.MAX_VALUE : length;
+                }
+            }
+            calibratedNativeThreshold = threshold;
+            return threshold;
+        }
+    }
+
+    private static long measureScanTime(SimpleMarkdownSymbolFinder symbolFinder, String text) {
+        // Scan the same amount of characters for each length, then return the best time from several runs
+        int iterations = Math.max(1, CALIBRATION_SCAN_SIZE / text.length());
+        long bestTime = Long.MAX_VALUE;
+        symbolFinder.scanText(text);
+        for (int run = 0; run < CALIBRATION_RUNS; run++) {
+            long startTime = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                symbolFinder.scanText(text);
+                symbolFinder.getSymbolStorage();
+            }
+            bestTime = Math.min(bestTime, System.nanoTime() - startTime);
+        }
+        return bestTime;
+    }
+
+
+    // --
+    // Loads the native library once on first use, class initialization makes it thread-safe without locking afterwards
+    // --
+
+    private static class NativeLibraryHolder {
+        static final boolean AVAILABLE = loadLibrary();
+
+        private static boolean loadLibrary() {
             try {
                 System.loadLibrary("simplemarkdownparser_native");
-                nativeParserLibraryLoaded = 1;
+                return true;
             } catch (Throwable t) {
-                nativeParserLibraryLoaded = -1;
+                return false;
             }
         }
-        return text.length() > 128 && nativeParserLibraryLoaded == 1 ? new SimpleMarkdownSymbolFinderNative() : new SimpleMarkdownSymbolFinderJava();
     }
 }
@@ -0,0 +1,136 @@
+package com.crescentflare.simplemarkdownparser.conversion;
+
+import com.crescentflare.simplemarkdownparser.symbolfinder.MarkdownEscapeIndex;
+import com.crescentflare.simplemarkdownparser.symbolfinder.MarkdownSymbol;
+import com.crescentflare.simplemarkdownparser.symbolfinder.SimpleMarkdownSymbolFinderPrimitive;
+import com.crescentflare.simplemarkdownparser.tagfinder.MarkdownTag;
+import com.crescentflare.simplemarkdownparser.tagfinder.MarkdownTagVisitor;
+import com.crescentflare.simplemarkdownparser.tagfinder.SimpleMarkdownTagFinder;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Simple markdown parser library: extractor
+ * Extract headings or links from markdown text without a full conversion
+ * Only the symbols and tag finder passes needed for the requested items are used
+ */
+public class SimpleMarkdownExtractor {
+
+    // --
+    // Constants
+    // --
+
+    private static final int SECTION_SYMBOL_MASK = MarkdownSymbol.Type.mask(
+        MarkdownSymbol.Type.Escape,
+        MarkdownSymbol.Type.TextBlock,
+        MarkdownSymbol.Type.Newline,
+        MarkdownSymbol.Type.Header,
+        MarkdownSymbol.Type.OrderedListItem,
+        MarkdownSymbol.Type.UnorderedListItem
+    );
+    private static final int LINK_SYMBOL_MASK = SECTION_SYMBOL_MASK | MarkdownSymbol.Type.mask(
+        MarkdownSymbol.Type.DoubleQuote,
+        MarkdownSymbol.Type.OpenLink,
+        MarkdownSymbol.Type.CloseLink,
+        MarkdownSymbol.Type.OpenUrl,
+        MarkdownSymbol.Type.CloseUrl
+    );
+
+
+    // --
+    // Extraction
+    // --
+
+    @NotNull public static List<MarkdownHeading> findHeadings(@NotNull final String markdownText) {
+        final List<MarkdownHeading> result = new ArrayList<>();
+        visitTags(markdownText, SECTION_SYMBOL_MASK, EnumSet.of(MarkdownTag.Type.Header), new ExtractionVisitor() {
+            @Override
+            public void enterSection(@NotNull MarkdownTag sectionTag) {
+                if (sectionTag.type == MarkdownTag.Type.Header) {
+                    result.add(new MarkdownHeading(getText(markdownText, sectionTag), sectionTag.weight, sectionTag.startText, sectionTag.endText));
+                }
+            }
+        });
+        return result;
+    }
+
+    @NotNull public static List<MarkdownLink> findLinks(@NotNull final String markdownText) {
+        final List<MarkdownLink> result = new ArrayList<>();
+        visitTags(markdownText, LINK_SYMBOL_MASK, EnumSet.of(MarkdownTag.Type.Link), new ExtractionVisitor() {
+            @Override
+            public void visitLink(@NotNull MarkdownTag linkTag) {
+                String url;
+                if (linkTag.startExtra >= 0 && linkTag.endExtra >= 0) {
+                    url = markdownText.substring(linkTag.startExtra, linkTag.endExtra);
+                } else {
+                    url = markdownText.substring(linkTag.startText, linkTag.endText);
+                }
+                result.add(new MarkdownLink(getText(markdownText, linkTag), url, linkTag.startText, linkTag.endText));
+            }
+        });
+        return result;
+    }
+
+
+    // --
+    // Helpers
+    // --
+
+    private static void visitTags(String markdownText, int symbolTypeMask, EnumSet<MarkdownTag.Type> tagTypes, MarkdownTagVisitor visitor) {
+        // Items are extracted while the tag finder walks through the sections, no list of all tags is created
+        SimpleMarkdownSymbolFinderPrimitive symbolFinder = new SimpleMarkdownSymbolFinderPrimitive();
+        symbolFinder.setSymbolTypeMask(symbolTypeMask);
+        symbolFinder.scanText(markdownText);
+        new SimpleMarkdownTagFinder().visitTags(markdownText, symbolFinder.getSymbolStorage(), tagTypes, visitor);
+    }
+
+    private static String getText(String markdownText, MarkdownTag tag) {
+        // Copy the tag text without escape characters
+        StringBuilder result = new StringBuilder(Math.max(0, tag.endText - tag.startText));
+        MarkdownEscapeIndex escapeIndex = tag.getEscapeIndex();
+        int position = tag.startText;
+        for (int index = escapeIndex.findFirstIndex(position); index < escapeIndex.size() && escapeIndex.getStartPosition(index) < tag.endText; index++) {
+            result.append(markdownText, position, escapeIndex.getStartPosition(index));
+            position = escapeIndex.getEndPosition(index);
+        }
+        if (position < tag.endText) {
+            result.append(markdownText, position, tag.endText);
+        }
+        return result.toString();
+    }
+
+
+    // --
+    // Visitor base class, only the callbacks for the extracted items are overridden
+    // --
+
+    private static class ExtractionVisitor implements MarkdownTagVisitor {
+        @Override
+        public void enterSection(@NotNull MarkdownTag sectionTag) {
+        }
+
+        @Override
+        public void visitLine(@NotNull MarkdownTag lineTag) {
+        }
+
+        @Override
+        public void visitTextStyle(@NotNull MarkdownTag textStyleTag) {
+        }
+
+        @Override
+        public void visitLink(@NotNull MarkdownTag linkTag) {
+        }
+
+        @Override
+        public void visitListItem(@NotNull MarkdownTag listItemTag) {
+        }
+
+        @Override
+        public void exitSection(@NotNull MarkdownTag sectionTag) {
+        }
+    }
+}
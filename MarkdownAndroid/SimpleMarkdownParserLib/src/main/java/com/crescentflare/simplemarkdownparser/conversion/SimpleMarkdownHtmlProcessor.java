@@ -6,6 +6,10 @@ import com.crescentflare.simplemarkdownparser.tagfinder.ProcessedMarkdownTag;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -14,26 +18,67 @@ import java.util.List;
 /**
  * Simple markdown parser library: HTML conversion
  * Helper class to generate HTML tags which are inserted into the processed markdown text
+ * The text and tags are written in one forward pass, either to a string, any appendable (like a writer) or as UTF-8 bytes
+ * Text and link values can optionally be escaped while they are written
  */
 public class SimpleMarkdownHtmlProcessor {
 
+    // --
+    // Constants
+    // --
+
+    private static final String[] ESCAPE_REPLACEMENTS = new String[128];
+    private static final byte[][] ESCAPE_REPLACEMENT_BYTES = new byte[128][];
+
+    static {
+        ESCAPE_REPLACEMENTS['&'] = "&amp;";
+        ESCAPE_REPLACEMENTS['<'] = "&lt;";
+        ESCAPE_REPLACEMENTS['>'] = "&gt;";
+        ESCAPE_REPLACEMENTS['"'] = "&quot;";
+        ESCAPE_REPLACEMENTS['\''] = "&#39;";
+        for (int i = 0; i < ESCAPE_REPLACEMENTS.length; i++) {
+            if (ESCAPE_REPLACEMENTS[i] != null) {
+                ESCAPE_REPLACEMENT_BYTES[i] = ESCAPE_REPLACEMENTS[i].getBytes(Charset.forName("UTF-8"));
+            }
+        }
+    }
+
+
     // --
     // Members
     // --
 
     @NotNull public String text = "";
-    private final StringBuilder textBuilder;
-    private final ArrayList<MarkdownHtmlTag> htmlTags = new ArrayList<>();
+    private final String processedText;
+    private final ArrayList<MarkdownHtmlTag> htmlTags;
     private final List<ProcessedMarkdownTag> markdownTags;
+    private final MarkdownDocument document;
+    private final MarkdownParseWorkspace workspace;
+    private final boolean escapeHtml;
 
 
     // --
     // Initialization
     // --
 
-    private SimpleMarkdownHtmlProcessor(String text, List<ProcessedMarkdownTag> tags) {
-        textBuilder = new StringBuilder(text);
+    private SimpleMarkdownHtmlProcessor(String text, List<ProcessedMarkdownTag> tags, boolean escapeHtml, MarkdownParseWorkspace workspace) {
+        processedText = text;
+        this.escapeHtml = escapeHtml;
+        htmlTags = workspace.htmlTags;
+        htmlTags.clear();
         this.markdownTags = tags;
+        this.document = null;
+        this.workspace = workspace;
+    }
+
+    private SimpleMarkdownHtmlProcessor(MarkdownDocument document, boolean escapeHtml, MarkdownParseWorkspace workspace) {
+        processedText = document.getText();
+        this.escapeHtml = escapeHtml;
+        htmlTags = workspace.htmlTags;
+        htmlTags.clear();
+        this.markdownTags = null;
+        this.document = document;
+        this.workspace = workspace;
     }
 
 
@@ -42,100 +87,238 @@ public class SimpleMarkdownHtmlProcessor {
     // --
 
     public static SimpleMarkdownHtmlProcessor process(@NotNull String text, @NotNull List<ProcessedMarkdownTag> tags) {
-        SimpleMarkdownHtmlProcessor instance = new SimpleMarkdownHtmlProcessor(text, tags);
+        return process(text, tags, false);
+    }
+
+    public static SimpleMarkdownHtmlProcessor process(@NotNull String text, @NotNull List<ProcessedMarkdownTag> tags, boolean escapeHtml) {
+        return process(text, tags, escapeHtml, new MarkdownParseWorkspace());
+    }
+
+    static SimpleMarkdownHtmlProcessor process(@NotNull String text, @NotNull List<ProcessedMarkdownTag> tags, boolean escapeHtml, @NotNull MarkdownParseWorkspace workspace) {
+        return processToString(new SimpleMarkdownHtmlProcessor(text, tags, escapeHtml, workspace));
+    }
+
+    static SimpleMarkdownHtmlProcessor process(@NotNull MarkdownDocument document, boolean escapeHtml, @NotNull MarkdownParseWorkspace workspace) {
+        return processToString(new SimpleMarkdownHtmlProcessor(document, escapeHtml, workspace));
+    }
+
+    private static SimpleMarkdownHtmlProcessor processToString(SimpleMarkdownHtmlProcessor instance) {
         instance.processInternal();
+        StringBuilder htmlBuilder = instance.workspace.htmlBuilder;
+        htmlBuilder.setLength(0);
+        htmlBuilder.ensureCapacity(instance.processedText.length() + instance.htmlTags.size() * 8);
+        try {
+            instance.writeHtml(htmlBuilder);
+        } catch (IOException e) {
+            // A string builder doesn't throw I/O exceptions
+            throw new RuntimeException(e);
+        }
+        instance.text = htmlBuilder.toString();
         return instance;
     }
 
-    private void processInternal() {
-        // Process markdown tags
-        ArrayList<ProcessedMarkdownTag> sectionTags = new ArrayList<>();
-        for (ProcessedMarkdownTag tag : markdownTags) {
-            if (tag.type.isSection()) {
-                sectionTags.add(tag);
-            }
+    public static void writeHtml(@NotNull String text, @NotNull List<ProcessedMarkdownTag> tags, @NotNull Appendable output) throws IOException {
+        writeHtml(text, tags, output, false);
+    }
+
+    public static void writeHtml(@NotNull String text, @NotNull List<ProcessedMarkdownTag> tags, @NotNull Appendable output, boolean escapeHtml) throws IOException {
+        writeHtml(text, tags, output, escapeHtml, new MarkdownParseWorkspace());
+    }
+
+    static void writeHtml(@NotNull String text, @NotNull List<ProcessedMarkdownTag> tags, @NotNull Appendable output, boolean escapeHtml, @NotNull MarkdownParseWorkspace workspace) throws IOException {
+        SimpleMarkdownHtmlProcessor instance = new SimpleMarkdownHtmlProcessor(text, tags, escapeHtml, workspace);
+        instance.processInternal();
+        instance.writeHtml(output);
+    }
+
+    static void writeHtml(@NotNull MarkdownDocument document, @NotNull Appendable output, boolean escapeHtml, @NotNull MarkdownParseWorkspace workspace) throws IOException {
+        SimpleMarkdownHtmlProcessor instance = new SimpleMarkdownHtmlProcessor(document, escapeHtml, workspace);
+        instance.processInternal();
+        instance.writeHtml(output);
+    }
+
+    public static void writeHtmlUtf8(@NotNull String text, @NotNull List<ProcessedMarkdownTag> tags, @NotNull OutputStream output) throws IOException {
+        writeHtmlUtf8(text, tags, output, false);
+    }
+
+    public static void writeHtmlUtf8(@NotNull String text, @NotNull List<ProcessedMarkdownTag> tags, @NotNull OutputStream output, boolean escapeHtml) throws IOException {
+        writeHtmlUtf8(text, tags, new MarkdownUtf8Output(output), escapeHtml, new MarkdownParseWorkspace());
+    }
+
+    public static void writeHtmlUtf8(@NotNull String text, @NotNull List<ProcessedMarkdownTag> tags, @NotNull ByteBuffer output) {
+        writeHtmlUtf8(text, tags, output, false);
+    }
+
+    public static void writeHtmlUtf8(@NotNull String text, @NotNull List<ProcessedMarkdownTag> tags, @NotNull ByteBuffer output, boolean escapeHtml) {
+        // Throws a buffer overflow exception when the buffer has no room left, like the put methods of the buffer
+        try {
+            writeHtmlUtf8(text, tags, new MarkdownUtf8Output(output), escapeHtml, new MarkdownParseWorkspace());
+        } catch (IOException e) {
+            // Writing to a byte buffer doesn't throw I/O exceptions
+            throw new RuntimeException(e);
         }
-        for (ProcessedMarkdownTag sectionTag : sectionTags) {
-            // First add section html tags
-            if (sectionTag.type == MarkdownTag.Type.Paragraph) {
-                htmlTags.add(new MarkdownHtmlTag(sectionTag.startPosition, MarkdownHtmlTagType.OpenParagraph, htmlTags.size()));
-                htmlTags.add(new MarkdownHtmlTag(sectionTag.endPosition, MarkdownHtmlTagType.CloseParagraph, htmlTags.size()));
-            } else if (sectionTag.type == MarkdownTag.Type.Header) {
-                int clippedWeight = Math.max(1, Math.min(sectionTag.weight, 6));
-                htmlTags.add(new MarkdownHtmlTag(sectionTag.startPosition, MarkdownHtmlTagType.allOpenHeaders.get(clippedWeight - 1), htmlTags.size()));
-                htmlTags.add(new MarkdownHtmlTag(sectionTag.endPosition, MarkdownHtmlTagType.allCloseHeaders.get(clippedWeight - 1), htmlTags.size()));
-            }
+    }
 
-            // Process inner tags
-            ArrayList<ProcessedMarkdownTag> innerTags = new ArrayList<>();
-            ArrayList<ProcessedMarkdownTag> innerListTags = new ArrayList<>();
-            for (ProcessedMarkdownTag tag : markdownTags) {
-                if (!tag.type.isSection() && tag.startPosition >= sectionTag.startPosition && tag.endPosition <= sectionTag.endPosition) {
-                    innerTags.add(tag);
+    static void writeHtmlUtf8(@NotNull String text, @NotNull List<ProcessedMarkdownTag> tags, @NotNull MarkdownUtf8Output output, boolean escapeHtml, @NotNull MarkdownParseWorkspace workspace) throws IOException {
+        SimpleMarkdownHtmlProcessor instance = new SimpleMarkdownHtmlProcessor(text, tags, escapeHtml, workspace);
+        instance.processInternal();
+        instance.writeHtml(output);
+        output.flush();
+    }
+
+    static void writeHtmlUtf8(@NotNull MarkdownDocument document, @NotNull MarkdownUtf8Output output, boolean escapeHtml, @NotNull MarkdownParseWorkspace workspace) throws IOException {
+        SimpleMarkdownHtmlProcessor instance = new SimpleMarkdownHtmlProcessor(document, escapeHtml, workspace);
+        instance.processInternal();
+        instance.writeHtml(output);
+        output.flush();
+    }
+
+    private void processInternal() {
+        ArrayList<ProcessedMarkdownTag> innerTags = workspace.processedInnerTags;
+        if (document != null) {
+            // Tags of a document are already grouped by section, tag objects are only created for the section being processed
+            for (int section = 0; section < document.getSectionCount(); section++) {
+                innerTags.clear();
+                for (int index = document.getFirstChildTagIndex(section); index < document.getEndChildTagIndex(section); index++) {
+                    innerTags.add(document.getTag(index));
                 }
+                addSectionHtmlTags(document.getTag(document.getSectionTagIndex(section)), innerTags);
             }
-            for (ProcessedMarkdownTag tag : innerTags) {
-                if (tag.type == MarkdownTag.Type.OrderedListItem || tag.type == MarkdownTag.Type.UnorderedListItem) {
-                    innerListTags.add(tag);
+        } else {
+            // Process markdown tags, the partition contains the tags for each section
+            MarkdownSectionPartition sectionPartition = workspace.getSectionPartition();
+            sectionPartition.partition(markdownTags);
+            for (int section = 0; section < sectionPartition.getSectionCount(); section++) {
+                innerTags.clear();
+                for (int innerIndex = sectionPartition.getFirstInnerIndex(section); innerIndex < sectionPartition.getEndInnerIndex(section); innerIndex++) {
+                    innerTags.add(markdownTags.get(sectionPartition.getInnerTagIndex(innerIndex)));
                 }
+                addSectionHtmlTags(markdownTags.get(sectionPartition.getSectionTagIndex(section)), innerTags);
             }
-            if (innerListTags.size() > 0) {
-                addHtmlListTags(innerListTags, 0, innerListTags.size(), 1);
+        }
+        innerTags.clear();
+        finishHtmlTags();
+    }
+
+    private void addSectionHtmlTags(ProcessedMarkdownTag sectionTag, List<ProcessedMarkdownTag> innerTags) {
+        // First add section html tags
+        if (sectionTag.type == MarkdownTag.Type.Paragraph) {
+            htmlTags.add(new MarkdownHtmlTag(sectionTag.startPosition, MarkdownHtmlTagType.OpenParagraph, htmlTags.size()));
+            htmlTags.add(new MarkdownHtmlTag(sectionTag.endPosition, MarkdownHtmlTagType.CloseParagraph, htmlTags.size()));
+        } else if (sectionTag.type == MarkdownTag.Type.Header) {
+            int clippedWeight = Math.max(1, Math.min(sectionTag.weight, 6));
+            htmlTags.add(new MarkdownHtmlTag(sectionTag.startPosition, MarkdownHtmlTagType.allOpenHeaders.get(clippedWeight - 1), htmlTags.size()));
+            htmlTags.add(new MarkdownHtmlTag(sectionTag.endPosition, MarkdownHtmlTagType.allCloseHeaders.get(clippedWeight - 1), htmlTags.size()));
+        }
+
+        // Process inner tags
+        ArrayList<ProcessedMarkdownTag> innerListTags = workspace.processedListTags;
+        innerListTags.clear();
+        for (ProcessedMarkdownTag tag : innerTags) {
+            if (tag.type == MarkdownTag.Type.OrderedListItem || tag.type == MarkdownTag.Type.UnorderedListItem) {
+                innerListTags.add(tag);
             }
-            for (ProcessedMarkdownTag tag : innerTags) {
-                switch (tag.type) {
-                    case TextStyle:
-                        int clippedWeight = Math.max(1, Math.min(tag.weight, 3));
-                        htmlTags.add(new MarkdownHtmlTag(tag.startPosition, MarkdownHtmlTagType.allOpenTextStyles.get(clippedWeight - 1), htmlTags.size()));
-                        htmlTags.add(new MarkdownHtmlTag(tag.endPosition, MarkdownHtmlTagType.allCloseTextStyles.get(clippedWeight - 1), htmlTags.size()));
-                        break;
-                    case AlternativeTextStyle:
-                        htmlTags.add(new MarkdownHtmlTag(tag.startPosition, MarkdownHtmlTagType.OpenAlternativeTextStyle, htmlTags.size()));
-                        htmlTags.add(new MarkdownHtmlTag(tag.endPosition, MarkdownHtmlTagType.CloseAlternativeTextStyle, htmlTags.size()));
-                        break;
-                    case Link:
-                        htmlTags.add(new MarkdownHtmlTag(tag.startPosition, MarkdownHtmlTagType.OpenLink, htmlTags.size(), tag.link));
-                        htmlTags.add(new MarkdownHtmlTag(tag.endPosition, MarkdownHtmlTagType.CloseLink, htmlTags.size()));
-                        break;
-                    case OrderedListItem:
-                    case UnorderedListItem:
-                        htmlTags.add(new MarkdownHtmlTag(tag.startPosition, MarkdownHtmlTagType.OpenListItem, htmlTags.size()));
-                        htmlTags.add(new MarkdownHtmlTag(tag.endPosition, MarkdownHtmlTagType.CloseListItem, htmlTags.size()));
-                        break;
-                    case Line:
-                        MarkdownHtmlTag htmlTag = new MarkdownHtmlTag(tag.endPosition, MarkdownHtmlTagType.LineBreak, htmlTags.size());
-                        htmlTag.preventCancellation = sectionTag.type == MarkdownTag.Type.List && tag.endPosition == sectionTag.endPosition;
-                        htmlTags.add(htmlTag);
-                        break;
-                    default:
-                        break;
-                }
+        }
+        if (innerListTags.size() > 0) {
+            addHtmlListTags(innerListTags);
+        }
+        for (ProcessedMarkdownTag tag : innerTags) {
+            switch (tag.type) {
+                case TextStyle:
+                    int clippedWeight = Math.max(1, Math.min(tag.weight, 3));
+                    htmlTags.add(new MarkdownHtmlTag(tag.startPosition, MarkdownHtmlTagType.allOpenTextStyles.get(clippedWeight - 1), htmlTags.size()));
+                    htmlTags.add(new MarkdownHtmlTag(tag.endPosition, MarkdownHtmlTagType.allCloseTextStyles.get(clippedWeight - 1), htmlTags.size()));
+                    break;
+                case AlternativeTextStyle:
+                    htmlTags.add(new MarkdownHtmlTag(tag.startPosition, MarkdownHtmlTagType.OpenAlternativeTextStyle, htmlTags.size()));
+                    htmlTags.add(new MarkdownHtmlTag(tag.endPosition, MarkdownHtmlTagType.CloseAlternativeTextStyle, htmlTags.size()));
+                    break;
+                case Link:
+                    htmlTags.add(new MarkdownHtmlTag(tag.startPosition, MarkdownHtmlTagType.OpenLink, htmlTags.size(), tag.link));
+                    htmlTags.add(new MarkdownHtmlTag(tag.endPosition, MarkdownHtmlTagType.CloseLink, htmlTags.size()));
+                    break;
+                case OrderedListItem:
+                case UnorderedListItem:
+                    htmlTags.add(new MarkdownHtmlTag(tag.startPosition, MarkdownHtmlTagType.OpenListItem, htmlTags.size()));
+                    htmlTags.add(new MarkdownHtmlTag(tag.endPosition, MarkdownHtmlTagType.CloseListItem, htmlTags.size()));
+                    break;
+                case Line:
+                    MarkdownHtmlTag htmlTag = new MarkdownHtmlTag(tag.endPosition, MarkdownHtmlTagType.LineBreak, htmlTags.size());
+                    htmlTag.preventCancellation = sectionTag.type == MarkdownTag.Type.List && tag.endPosition == sectionTag.endPosition;
+                    htmlTags.add(htmlTag);
+                    break;
+                default:
+                    break;
             }
         }
+    }
 
-        // Remove line breaks canceled by other html tags
-        ArrayList<Integer> removeIndices = new ArrayList<>();
-        for (int index = 0; index < htmlTags.size(); index++) {
-            if (htmlTags.get(index).tag == MarkdownHtmlTagType.LineBreak && !htmlTags.get(index).preventCancellation) {
-                for (int checkIndex = 0; checkIndex < htmlTags.size(); checkIndex++) {
-                    if (checkIndex != index && htmlTags.get(index).position == htmlTags.get(checkIndex).position && htmlTags.get(checkIndex).tag.cancelsLineBreak()) {
-                        removeIndices.add(index);
-                        break;
-                    }
+    private void finishHtmlTags() {
+        // Sort html tags for writing, tags at the same position end up next to each other
+        Collections.sort(htmlTags);
+
+        // Remove line breaks canceled by other html tags at the same position
+        int keepCount = 0;
+        int groupStart = 0;
+        while (groupStart < htmlTags.size()) {
+            int position = htmlTags.get(groupStart).position;
+            int groupEnd = groupStart;
+            boolean cancelLineBreaks = false;
+            while (groupEnd < htmlTags.size() && htmlTags.get(groupEnd).position == position) {
+                cancelLineBreaks |= htmlTags.get(groupEnd).tag.cancelsLineBreak();
+                groupEnd++;
+            }
+            for (int index = groupStart; index < groupEnd; index++) {
+                MarkdownHtmlTag htmlTag = htmlTags.get(index);
+                if (!cancelLineBreaks || htmlTag.tag != MarkdownHtmlTagType.LineBreak || htmlTag.preventCancellation) {
+                    htmlTags.set(keepCount++, htmlTag);
                 }
             }
+            groupStart = groupEnd;
         }
-        for (int i = removeIndices.size() - 1; i >= 0; i--) {
-            int removeIndex = removeIndices.get(i);
-            htmlTags.remove(removeIndex);
+        htmlTags.subList(keepCount, htmlTags.size()).clear();
+    }
+
+    private void writeHtml(Appendable output) throws IOException {
+        // Html tags are sorted from the end of the text, tags at the same position are written in reverse (like inserting each of them in front of the previous one)
+        int position = 0;
+        for (int i = htmlTags.size() - 1; i >= 0; i--) {
+            MarkdownHtmlTag htmlTag = htmlTags.get(i);
+            appendText(output, processedText, position, htmlTag.position, escapeHtml);
+            htmlTag.appendToken(output, escapeHtml);
+            position = htmlTag.position;
         }
+        appendText(output, processedText, position, processedText.length(), escapeHtml);
+    }
 
-        // Sort and insert in text (start at the end, to easily insert without taking string position changes into account)
-        Collections.sort(htmlTags);
-        for (MarkdownHtmlTag htmlTag : htmlTags) {
-            textBuilder.insert(htmlTag.position, htmlTag.insertToken());
+    private void writeHtml(MarkdownUtf8Output output) throws IOException {
+        // The same as writing to an appendable, using the pre-encoded tokens
+        byte[][] replacements = escapeHtml ? ESCAPE_REPLACEMENT_BYTES : null;
+        int position = 0;
+        for (int i = htmlTags.size() - 1; i >= 0; i--) {
+            MarkdownHtmlTag htmlTag = htmlTags.get(i);
+            output.writeText(processedText, position, htmlTag.position, replacements);
+            htmlTag.writeToken(output, replacements);
+            position = htmlTag.position;
         }
-        text = textBuilder.toString();
+        output.writeText(processedText, position, processedText.length(), replacements);
+    }
+
+    private static void appendText(Appendable output, String text, int startPosition, int endPosition, boolean escapeHtml) throws IOException {
+        // Copy runs of characters which don't need escaping at once, look up replacements for the others
+        if (!escapeHtml) {
+            output.append(text, startPosition, endPosition);
+            return;
+        }
+        int runStart = startPosition;
+        for (int i = startPosition; i < endPosition; i++) {
+            char chr = text.charAt(i);
+            if (chr < ESCAPE_REPLACEMENTS.length && ESCAPE_REPLACEMENTS[chr] != null) {
+                output.append(text, runStart, i).append(ESCAPE_REPLACEMENTS[chr]);
+                runStart = i + 1;
+            }
+        }
+        output.append(text, runStart, endPosition);
     }
 
 
@@ -143,42 +326,44 @@ public class SimpleMarkdownHtmlProcessor {
     // Helper
     // --
 
-    private void addHtmlListTags(List<ProcessedMarkdownTag> innerTags, int index, int untilIndex, int weight) {
-        // Find start index for tag matching weight, return early if none are found
-        int startIndex = -1;
-        for (int i = index; i < untilIndex; i++) {
-            int tagWeight = Math.max(1, innerTags.get(i).weight);
-            if (tagWeight >= weight) {
-                startIndex = i;
-                break;
+    private void addHtmlListTags(List<ProcessedMarkdownTag> listTags) {
+        // Find lists in one pass, the stack contains the open list for each weight up to the weight of the last item
+        ArrayList<HtmlListRange> listRanges = workspace.htmlListRanges;
+        ArrayList<HtmlListRange> openListRanges = workspace.openHtmlListRanges;
+        listRanges.clear();
+        openListRanges.clear();
+        for (int i = 0; i < listTags.size(); i++) {
+            // Close lists with a higher weight, and the list with the same weight when the item has a different list type
+            ProcessedMarkdownTag listTag = listTags.get(i);
+            int tagWeight = Math.max(1, listTag.weight);
+            while (openListRanges.size() > tagWeight) {
+                openListRanges.remove(openListRanges.size() - 1).endIndex = i;
             }
-        }
-        if (startIndex < index) {
-            return;
-        }
-
-        // Find end index
-        MarkdownTag.Type checkType = innerTags.get(startIndex).weight == weight ? innerTags.get(startIndex).type : MarkdownTag.Type.List;
-        int endIndex = startIndex + 1;
-        for (int i = startIndex + 1; i < untilIndex; i++) {
-            int tagWeight = Math.max(1, innerTags.get(i).weight);
-            if (checkType == MarkdownTag.Type.List && tagWeight == weight) {
-                checkType = innerTags.get(i).type;
+            if (openListRanges.size() == tagWeight) {
+                HtmlListRange listRange = openListRanges.get(tagWeight - 1);
+                if (listRange.type == MarkdownTag.Type.List) {
+                    listRange.type = listTag.type;
+                } else if (listRange.type != listTag.type) {
+                    openListRanges.remove(tagWeight - 1).endIndex = i;
+                }
             }
-            if (tagWeight < weight || (tagWeight == weight && innerTags.get(i).type != checkType)) {
-                break;
+
+            // Open lists up to the weight of the item, the list type is known when the item weight matches (otherwise it's taken from the first item which does)
+            while (openListRanges.size() < tagWeight) {
+                int weight = openListRanges.size() + 1;
+                HtmlListRange listRange = new HtmlListRange(i, listTag.weight == weight ? listTag.type : MarkdownTag.Type.List);
+                listRanges.add(listRange);
+                openListRanges.add(listRange);
             }
-            endIndex += 1;
+        }
+        for (HtmlListRange listRange : openListRanges) {
+            listRange.endIndex = listTags.size();
         }
 
-        // Insert list section tags
-        htmlTags.add(new MarkdownHtmlTag(innerTags.get(startIndex).startPosition, checkType == MarkdownTag.Type.OrderedListItem ? MarkdownHtmlTagType.OpenOrderedList : MarkdownHtmlTagType.OpenUnorderedList, htmlTags.size()));
-        htmlTags.add(new MarkdownHtmlTag(innerTags.get(endIndex - 1).endPosition, checkType == MarkdownTag.Type.OrderedListItem ? MarkdownHtmlTagType.CloseOrderedList : MarkdownHtmlTagType.CloseUnorderedList, htmlTags.size()));
-
-        // Call recursively for a higher weight, or continuation into a different list type
-        addHtmlListTags(innerTags, startIndex, endIndex, weight + 1);
-        if (endIndex < untilIndex) {
-            addHtmlListTags(innerTags, endIndex, untilIndex, weight);
+        // Insert list section tags in the order in which they were opened
+        for (HtmlListRange listRange : listRanges) {
+            htmlTags.add(new MarkdownHtmlTag(listTags.get(listRange.startIndex).startPosition, listRange.type == MarkdownTag.Type.OrderedListItem ? MarkdownHtmlTagType.OpenOrderedList : MarkdownHtmlTagType.OpenUnorderedList, htmlTags.size()));
+            htmlTags.add(new MarkdownHtmlTag(listTags.get(listRange.endIndex - 1).endPosition, listRange.type == MarkdownTag.Type.OrderedListItem ? MarkdownHtmlTagType.CloseOrderedList : MarkdownHtmlTagType.CloseUnorderedList, htmlTags.size()));
         }
     }
 
@@ -187,7 +372,7 @@ public class SimpleMarkdownHtmlProcessor {
     // Enum for HTML tag types
     // --
 
-    private enum MarkdownHtmlTagType {
+    enum MarkdownHtmlTagType {
         LineBreak("<br/>"),
         OpenHeader1("<h1>"),
         CloseHeader1("</h1>"),
@@ -221,9 +406,17 @@ public class SimpleMarkdownHtmlProcessor {
         CloseLink("</a>");
 
         private final String stringValue;
+        private final byte[] utf8Bytes;
+        private final int valueIndex;
+        private boolean closingTag;
+        private boolean cancelsLineBreak;
+        private int priority;
 
         MarkdownHtmlTagType(String stringValue) {
+            // Tokens only contain ASCII characters, so the value position is the same in the encoded bytes
             this.stringValue = stringValue;
+            this.utf8Bytes = stringValue.getBytes(Charset.forName("UTF-8"));
+            this.valueIndex = stringValue.indexOf('#');
         }
 
         @Override
@@ -237,21 +430,41 @@ public class SimpleMarkdownHtmlProcessor {
         static List<MarkdownHtmlTagType> allCloseTextStyles = new ArrayList<>(Arrays.asList(CloseTextStyle1, CloseTextStyle2, CloseTextStyle3));
 
         boolean cancelsLineBreak() {
-            return allCloseHeaders.contains(this) || this == CloseParagraph || this == CloseUnorderedList || this == CloseOrderedList || this == CloseListItem;
+            return cancelsLineBreak;
         }
 
         boolean isClosingTag() {
-            return allCloseHeaders.contains(this) || allCloseTextStyles.contains(this) || this == CloseParagraph || this == CloseUnorderedList || this == CloseOrderedList || this == CloseListItem || this == CloseAlternativeTextStyle || this == CloseLink;
+            return closingTag;
         }
 
         int priority() {
-            if (this == LineBreak) {
-                return 2;
-            }
-            if (isClosingTag()) {
-                return 1;
+            return priority;
+        }
+
+        static {
+            // Determine tag type properties once, they are used while sorting
+            for (MarkdownHtmlTagType type : values()) {
+                type.closingTag = allCloseHeaders.contains(type) || allCloseTextStyles.contains(type) || type == CloseParagraph || type == CloseUnorderedList || type == CloseOrderedList || type == CloseListItem || type == CloseAlternativeTextStyle || type == CloseLink;
+                type.cancelsLineBreak = allCloseHeaders.contains(type) || type == CloseParagraph || type == CloseUnorderedList || type == CloseOrderedList || type == CloseListItem;
+                type.priority = type == LineBreak ? 2 : (type.closingTag ? 1 : 0);
             }
-            return 0;
+        }
+    }
+
+
+    // --
+    // Internal list range class
+    // --
+
+    static class HtmlListRange {
+        int startIndex;
+        int endIndex;
+        MarkdownTag.Type type;
+
+        HtmlListRange(int startIndex, MarkdownTag.Type type) {
+            this.startIndex = startIndex;
+            this.endIndex = startIndex + 1;
+            this.type = type;
         }
     }
 
@@ -260,7 +473,7 @@ public class SimpleMarkdownHtmlProcessor {
     // Internal HTML tag class
     // --
 
-    private static class MarkdownHtmlTag implements Comparable<MarkdownHtmlTag> {
+    static class MarkdownHtmlTag implements Comparable<MarkdownHtmlTag> {
         int position;
         MarkdownHtmlTagType tag;
         int counter;
@@ -278,11 +491,26 @@ public class SimpleMarkdownHtmlProcessor {
             this.value = value;
         }
 
-        String insertToken() {
-            if (value != null) {
-                return tag.toString().replace("#", value);
+        void appendToken(Appendable output, boolean escapeHtml) throws IOException {
+            String token = tag.toString();
+            if (value != null && tag.valueIndex >= 0) {
+                output.append(token, 0, tag.valueIndex);
+                appendText(output, value, 0, value.length(), escapeHtml);
+                output.append(token, tag.valueIndex + 1, token.length());
+            } else {
+                output.append(token);
+            }
+        }
+
+        void writeToken(MarkdownUtf8Output output, byte[][] replacements) throws IOException {
+            byte[] tokenBytes = tag.utf8Bytes;
+            if (value != null && tag.valueIndex >= 0) {
+                output.writeBytes(tokenBytes, 0, tag.valueIndex);
+                output.writeText(value, 0, value.length(), replacements);
+                output.writeBytes(tokenBytes, tag.valueIndex + 1, tokenBytes.length);
+            } else {
+                output.writeBytes(tokenBytes, 0, tokenBytes.length);
             }
-            return tag.toString();
         }
 
         @Override
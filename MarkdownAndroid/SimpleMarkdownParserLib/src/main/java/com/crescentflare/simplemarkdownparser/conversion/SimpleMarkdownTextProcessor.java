@@ -1,15 +1,21 @@
 package com.crescentflare.simplemarkdownparser.conversion;
 
-import com.crescentflare.simplemarkdownparser.symbolfinder.MarkdownSymbol;
+import com.crescentflare.simplemarkdownparser.symbolfinder.MarkdownEscapeIndex;
 import com.crescentflare.simplemarkdownparser.tagfinder.MarkdownTag;
+import com.crescentflare.simplemarkdownparser.tagfinder.MarkdownTagTable;
 import com.crescentflare.simplemarkdownparser.tagfinder.ProcessedMarkdownTag;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
 
 /**
  * Simple markdown parser library: text conversion
@@ -23,19 +29,23 @@ public class SimpleMarkdownTextProcessor {
 
     @NotNull public String text = "";
     @NotNull public List<ProcessedMarkdownTag> tags = new ArrayList<>();
-    private final List<MarkdownTag> originalTags;
+    private final MarkdownTagTable originalTags;
     private final String originalText;
-    private final MarkdownSpanGenerator spanGenerator;
+    private final boolean countListItems;
+    private final boolean addSectionSpacers;
+    private final MarkdownParseWorkspace workspace;
 
 
     // --
     // Initialization
     // --
 
-    private SimpleMarkdownTextProcessor(String text, List<MarkdownTag> tags, MarkdownSpanGenerator spanGenerator) {
+    private SimpleMarkdownTextProcessor(String text, MarkdownTagTable tags, boolean countListItems, boolean addSectionSpacers, MarkdownParseWorkspace workspace) {
         originalText = text;
         this.originalTags = tags;
-        this.spanGenerator = spanGenerator;
+        this.countListItems = countListItems;
+        this.addSectionSpacers = addSectionSpacers;
+        this.workspace = workspace;
     }
 
 
@@ -48,24 +58,43 @@ public class SimpleMarkdownTextProcessor {
     }
 
     public static SimpleMarkdownTextProcessor process(@NotNull String text, @NotNull List<MarkdownTag> tags, @Nullable MarkdownSpanGenerator spanGenerator) {
-        SimpleMarkdownTextProcessor instance = new SimpleMarkdownTextProcessor(text, tags, spanGenerator);
+        return process(text, MarkdownTagTable.fromTags(tags), spanGenerator, new MarkdownParseWorkspace());
+    }
+
+    public static SimpleMarkdownTextProcessor process(@NotNull String text, @NotNull MarkdownTagTable tags) {
+        return process(text, tags, null);
+    }
+
+    public static SimpleMarkdownTextProcessor process(@NotNull String text, @NotNull MarkdownTagTable tags, @Nullable MarkdownSpanGenerator spanGenerator) {
+        return process(text, tags, spanGenerator, new MarkdownParseWorkspace());
+    }
+
+    static SimpleMarkdownTextProcessor process(@NotNull String text, @NotNull MarkdownTagTable tags, @Nullable MarkdownSpanGenerator spanGenerator, @NotNull MarkdownParseWorkspace workspace) {
+        return process(text, tags, spanGenerator != null, spanGenerator != null, workspace);
+    }
+
+    static SimpleMarkdownTextProcessor process(@NotNull String text, @NotNull MarkdownTagTable tags, boolean countListItems, boolean addSectionSpacers, @NotNull MarkdownParseWorkspace workspace) {
+        SimpleMarkdownTextProcessor instance = new SimpleMarkdownTextProcessor(text, tags, countListItems, addSectionSpacers, workspace);
         instance.processInternal();
         return instance;
     }
 
     public void rearrangeNestedTextStyles() {
-        List<ProcessedMarkdownTag> originalTags = tags;
+        tags = rearrangeNestedTextStyles(tags);
+    }
+
+    static List<ProcessedMarkdownTag> rearrangeNestedTextStyles(List<ProcessedMarkdownTag> originalTags) {
         int scanPosition = 0;
         int alternativeScanPosition = 0;
-        tags = new ArrayList<>();
+        List<ProcessedMarkdownTag> tags = new ArrayList<>();
         for (int index = 0; index < originalTags.size(); index++) {
             ProcessedMarkdownTag checkTag = originalTags.get(index);
             if (checkTag.type == MarkdownTag.Type.TextStyle || checkTag.type == MarkdownTag.Type.AlternativeTextStyle) {
                 if ((checkTag.type == MarkdownTag.Type.TextStyle && checkTag.startPosition >= scanPosition) || (checkTag.type == MarkdownTag.Type.AlternativeTextStyle && checkTag.startPosition >= alternativeScanPosition)) {
-                    List<ProcessedMarkdownTag> nestedTags = getRearrangedTextStyleTags(originalTags, index);
-                    tags.addAll(nestedTags);
-                    if (nestedTags.size() > 0) {
-                        ProcessedMarkdownTag lastNestedTag = nestedTags.get(nestedTags.size() - 1);
+                    int addedFromIndex = tags.size();
+                    addRearrangedTextStyleTags(originalTags, index, tags);
+                    if (tags.size() > addedFromIndex) {
+                        ProcessedMarkdownTag lastNestedTag = tags.get(tags.size() - 1);
                         if (checkTag.type == MarkdownTag.Type.TextStyle) {
                             scanPosition = lastNestedTag.endPosition;
                         } else {
@@ -78,24 +107,26 @@ public class SimpleMarkdownTextProcessor {
             }
         }
         Collections.sort(tags);
+        return tags;
     }
 
     private void processInternal() {
-        ArrayList<MarkdownTag> sectionTags = new ArrayList<>();
-        StringBuilder textBuilder = new StringBuilder();
-        for (MarkdownTag tag : originalTags) {
-            if (tag.type.isSection()) {
-                sectionTags.add(tag);
-            }
+        MarkdownSectionPartition sectionPartition = workspace.getSectionPartition();
+        ArrayList<MarkdownTag> sectionTags = workspace.sectionTags;
+        StringBuilder textBuilder = workspace.textBuilder;
+        sectionPartition.partition(originalTags);
+        sectionTags.clear();
+        textBuilder.setLength(0);
+        for (int section = 0; section < sectionPartition.getSectionCount(); section++) {
+            sectionTags.add(originalTags.getTag(sectionPartition.getSectionTagIndex(section)));
         }
         for (int sectionIndex = 0; sectionIndex < sectionTags.size(); sectionIndex++) {
-            // Determine tags and copy ranges for this section
+            // Determine tags and copy ranges for this section, the partition contains the tags for each section
             MarkdownTag sectionTag = sectionTags.get(sectionIndex);
-            ArrayList<MarkdownTag> innerTags = new ArrayList<>();
-            for (MarkdownTag tag : originalTags) {
-                if (!tag.type.isSection() && tag.startPosition >= sectionTag.startPosition && tag.endPosition <= sectionTag.endPosition) {
-                    innerTags.add(tag);
-                }
+            ArrayList<MarkdownTag> innerTags = workspace.innerTags;
+            innerTags.clear();
+            for (int innerIndex = sectionPartition.getFirstInnerIndex(sectionIndex); innerIndex < sectionPartition.getEndInnerIndex(sectionIndex); innerIndex++) {
+                innerTags.add(originalTags.getTag(sectionPartition.getInnerTagIndex(innerIndex)));
             }
             List<ProcessorRange> copyRanges = getCopyRanges(sectionTag, innerTags);
 
@@ -115,25 +146,32 @@ public class SimpleMarkdownTextProcessor {
 
             // Add processed inner tags
             List<ProcessorRange> deleteRanges = getDeleteRanges(sectionTag, copyRanges);
-            ArrayList<Integer> listWeightCounter = new ArrayList<>();
+            ProcessorShiftTable shiftTable = new ProcessorShiftTable(deleteRanges);
+            int[] listWeightCounter = workspace.listWeightCounter;
+            int listWeightCount = 0;
             int blockPositionAdjustment = sectionTag.startPosition - startTextPosition;
             for (MarkdownTag innerTag : innerTags) {
-                // Calculate position offset adjustments
+                // Calculate position offset adjustments from the shift table, tags with their text end before the start (not created by the tag finder) check each range
                 int startOffset = -blockPositionAdjustment;
                 int endOffset = -blockPositionAdjustment;
-                for (ProcessorRange range : deleteRanges) {
-                    if (range.type == ProcessorRangeType.Delete && range.startPosition < innerTag.endText) {
-                        int rangeLength = range.endPosition - range.startPosition;
-                        int tagLength = innerTag.endText - innerTag.startText;
-                        int startAdjustment = Math.max(0, Math.min(rangeLength, innerTag.startText - range.startPosition));
-                        startOffset -= startAdjustment;
-                        endOffset -= startAdjustment + Math.min(tagLength, Math.min(rangeLength, Math.max(0, Math.min(innerTag.endText - range.startPosition, range.endPosition - innerTag.startText))));
-                    } else if (range.type.isInsert() && range.startPosition < innerTag.endText) {
-                        int length = range.insertText != null ? range.insertText.length() : 0;
-                        if (range.endPosition <= innerTag.startText) {
-                            startOffset += length;
+                if (innerTag.endText >= innerTag.startText) {
+                    startOffset += shiftTable.getInsertedBefore(Math.min(innerTag.startText + 1, innerTag.endText)) - shiftTable.getDeletedBefore(innerTag.startText);
+                    endOffset += shiftTable.getInsertedBefore(innerTag.endText) - shiftTable.getDeletedBefore(innerTag.endText);
+                } else {
+                    for (ProcessorRange range : deleteRanges) {
+                        if (range.type == ProcessorRangeType.Delete && range.startPosition < innerTag.endText) {
+                            int rangeLength = range.endPosition - range.startPosition;
+                            int tagLength = innerTag.endText - innerTag.startText;
+                            int startAdjustment = Math.max(0, Math.min(rangeLength, innerTag.startText - range.startPosition));
+                            startOffset -= startAdjustment;
+                            endOffset -= startAdjustment + Math.min(tagLength, Math.min(rangeLength, Math.max(0, Math.min(innerTag.endText - range.startPosition, range.endPosition - innerTag.startText))));
+                        } else if (range.type.isInsert() && range.startPosition < innerTag.endText) {
+                            int length = range.insertText != null ? range.insertText.length() : 0;
+                            if (range.endPosition <= innerTag.startText) {
+                                startOffset += length;
+                            }
+                            endOffset += length;
                         }
-                        endOffset += length;
                     }
                 }
 
@@ -150,22 +188,22 @@ public class SimpleMarkdownTextProcessor {
                 }
 
                 // Count list items
-                if ((processedTag.type == MarkdownTag.Type.OrderedListItem || processedTag.type == MarkdownTag.Type.UnorderedListItem) && spanGenerator != null) {
+                if ((processedTag.type == MarkdownTag.Type.OrderedListItem || processedTag.type == MarkdownTag.Type.UnorderedListItem) && countListItems) {
                     int weightIndex = Math.max(0, processedTag.weight - 1);
-                    if (weightIndex >= listWeightCounter.size()) {
-                        for (int i = listWeightCounter.size(); i <= weightIndex; i++) {
-                            listWeightCounter.add(0);
+                    if (weightIndex >= listWeightCount) {
+                        if (weightIndex >= listWeightCounter.length) {
+                            listWeightCounter = Arrays.copyOf(listWeightCounter, Math.max(weightIndex + 1, listWeightCounter.length * 2));
+                            workspace.listWeightCounter = listWeightCounter;
                         }
-                    } else if (weightIndex + 1 < listWeightCounter.size()) {
-                        int removeItems = listWeightCounter.size() - weightIndex - 1;
-                        for (int i = 0; i < removeItems; i++) {
-                            listWeightCounter.remove(listWeightCounter.size() - 1);
-                        }
-                    } else if ((listWeightCounter.get(weightIndex) > 0) != (processedTag.type == MarkdownTag.Type.OrderedListItem)) {
-                        listWeightCounter.set(weightIndex, 0);
+                        Arrays.fill(listWeightCounter, listWeightCount, weightIndex + 1, 0);
+                        listWeightCount = weightIndex + 1;
+                    } else if (weightIndex + 1 < listWeightCount) {
+                        listWeightCount = weightIndex + 1;
+                    } else if ((listWeightCounter[weightIndex] > 0) != (processedTag.type == MarkdownTag.Type.OrderedListItem)) {
+                        listWeightCounter[weightIndex] = 0;
                     }
-                    processedTag.counter = Math.abs(listWeightCounter.get(weightIndex)) + 1;
-                    listWeightCounter.set(weightIndex, listWeightCounter.get(weightIndex) + (processedTag.type == MarkdownTag.Type.OrderedListItem ? 1 : -1));
+                    processedTag.counter = Math.abs(listWeightCounter[weightIndex]) + 1;
+                    listWeightCounter[weightIndex] += processedTag.type == MarkdownTag.Type.OrderedListItem ? 1 : -1;
                 }
 
                 // And add it
@@ -174,7 +212,7 @@ public class SimpleMarkdownTextProcessor {
 
             // Add section spacer and newlines between sections
             if (sectionIndex + 1 < sectionTags.size()) {
-                if (spanGenerator != null) {
+                if (addSectionSpacers) {
                     textBuilder.append("\n\n");
                     tags.add(new ProcessedMarkdownTag(MarkdownTag.Type.SectionSpacer, 0, textBuilder.length() - 1, textBuilder.length()));
                 } else {
@@ -185,38 +223,59 @@ public class SimpleMarkdownTextProcessor {
         text = textBuilder.toString();
     }
 
-    private List<ProcessedMarkdownTag> getRearrangedTextStyleTags(List<ProcessedMarkdownTag> checkTags, int index) {
-        return getRearrangedTextStyleTags(checkTags, index, 0);
-    }
+    private static void addRearrangedTextStyleTags(List<ProcessedMarkdownTag> checkTags, int index, List<ProcessedMarkdownTag> result) {
+        // Split a text style tag around nested tags of the same type, nested tags get the weight of their parents added to them
+        // An explicit stack of frames is used instead of recursion to support any amount of nesting
+        ArrayList<RearrangeFrame> frames = new ArrayList<>();
+        frames.add(new RearrangeFrame(index, 0, checkTags.get(index).startPosition, result.size()));
+        while (frames.size() > 0) {
+            // Continue scanning for nested tags, start a new frame when one is found
+            RearrangeFrame frame = frames.get(frames.size() - 1);
+            ProcessedMarkdownTag textStyleTag = checkTags.get(frame.tagIndex);
+            int weight = textStyleTag.weight + frame.addWeight;
+            RearrangeFrame nestedFrame = null;
+            while (frame.checkIndex < checkTags.size()) {
+                // Break when reaching the end of the current text style tag
+                ProcessedMarkdownTag checkTag = checkTags.get(frame.checkIndex);
+                if (checkTag.startPosition >= textStyleTag.endPosition) {
+                    break;
+                }
 
-    private List<ProcessedMarkdownTag> getRearrangedTextStyleTags(List<ProcessedMarkdownTag> checkTags, int index, int addWeight) {
-        // Scan nested tags
-        ProcessedMarkdownTag textStyleTag = checkTags.get(index);
-        ArrayList<ProcessedMarkdownTag> result = new ArrayList<>();
-        int scanPosition = textStyleTag.startPosition;
-        for (int i = index + 1; i < checkTags.size(); i++) {
-            // Break when reaching the end of the current text style tag
-            ProcessedMarkdownTag checkTag = checkTags.get(i);
-            if (checkTag.startPosition >= textStyleTag.endPosition) {
-                break;
+                // Check nested text style tag
+                frame.maxStartPosition = Math.max(frame.maxStartPosition, checkTag.startPosition);
+                if (checkTag.startPosition >= frame.scanPosition && checkTag.type == textStyleTag.type) {
+                    result.add(new ProcessedMarkdownTag(textStyleTag.type, weight, frame.scanPosition, checkTag.startPosition));
+                    nestedFrame = new RearrangeFrame(frame.checkIndex, weight, checkTag.startPosition, result.size());
+                    break;
+                }
+                frame.checkIndex++;
+            }
+            if (nestedFrame != null) {
+                frames.add(nestedFrame);
+                continue;
             }
 
-            // Check nested text style tag
-            if (checkTag.startPosition >= scanPosition && checkTag.type == textStyleTag.type) {
-                List<ProcessedMarkdownTag> nestedTags = getRearrangedTextStyleTags(checkTags, i, textStyleTag.weight + addWeight);
-                result.add(new ProcessedMarkdownTag(textStyleTag.type, textStyleTag.weight + addWeight, scanPosition, checkTag.startPosition));
-                result.addAll(nestedTags);
-                if (nestedTags.size() > 0) {
-                    scanPosition = nestedTags.get(nestedTags.size() - 1).endPosition;
+            // Finish current tag
+            if (frame.scanPosition < textStyleTag.endPosition) {
+                result.add(new ProcessedMarkdownTag(textStyleTag.type, weight, frame.scanPosition, textStyleTag.endPosition));
+            }
+            frames.remove(frames.size() - 1);
+
+            // Continue the parent after the nested tag, tags already checked by the nested frame can be skipped when they start before the new scan position and can't end the parent
+            if (frames.size() > 0) {
+                RearrangeFrame parentFrame = frames.get(frames.size() - 1);
+                boolean addedTags = result.size() > frame.resultStartIndex;
+                if (addedTags) {
+                    parentFrame.scanPosition = result.get(result.size() - 1).endPosition;
+                }
+                if (addedTags && frame.maxStartPosition < checkTags.get(parentFrame.tagIndex).endPosition && frame.maxStartPosition < parentFrame.scanPosition) {
+                    parentFrame.maxStartPosition = Math.max(parentFrame.maxStartPosition, frame.maxStartPosition);
+                    parentFrame.checkIndex = frame.checkIndex;
+                } else {
+                    parentFrame.checkIndex++;
                 }
             }
         }
-
-        // Finish current tag and return result
-        if (scanPosition < textStyleTag.endPosition) {
-            result.add(new ProcessedMarkdownTag(textStyleTag.type, textStyleTag.weight + addWeight, scanPosition, textStyleTag.endPosition));
-        }
-        return result;
     }
 
 
@@ -225,42 +284,34 @@ public class SimpleMarkdownTextProcessor {
     // --
 
     private List<ProcessorRange> getCopyRanges(MarkdownTag sectionTag, List<MarkdownTag> innerTags) {
-        // Mark possible escape characters from the entire block for removal
+        // Mark possible escape characters from the entire block for removal, escapes are sorted so only the last range can contain the next one
         ProcessorRange sectionRange = new ProcessorRange(sectionTag.startText, sectionTag.endText, ProcessorRangeType.Copy);
         ArrayList<ProcessorRange> modifyRanges = new ArrayList<>();
         modifyRanges.add(sectionRange);
-        for (MarkdownSymbol escapeSymbol : sectionTag.escapeSymbols) {
-            for (ProcessorRange modifyRange : modifyRanges) {
-                ProcessorRange addRange = modifyRange.markRemoval(escapeSymbol.startPosition, escapeSymbol.endPosition);
-                if (addRange != null) {
-                    modifyRanges.add(addRange);
-                    break;
-                }
+        MarkdownEscapeIndex escapeIndex = sectionTag.getEscapeIndex();
+        for (int index = sectionTag.getFirstEscapeIndex(escapeIndex); index < sectionTag.getEndEscapeIndex(escapeIndex); index++) {
+            ProcessorRange addRange = modifyRanges.get(modifyRanges.size() - 1).markRemoval(escapeIndex.getStartPosition(index), escapeIndex.getEndPosition(index));
+            if (addRange != null) {
+                modifyRanges.add(addRange);
             }
         }
 
-        // Process inner tags
+        // Process inner tags, keep the valid copy ranges in a sorted set to find, split and drop the ones affected by a removal in logarithmic time
+        TreeSet<ProcessorRange> sortedCopyRanges = new TreeSet<>(ProcessorRange.END_POSITION_ORDER);
+        for (ProcessorRange range : modifyRanges) {
+            if (range.isValid()) {
+                sortedCopyRanges.add(range);
+            }
+        }
         for (MarkdownTag innerTag : innerTags) {
             // Mark leading text for removal
             if (innerTag.startText > innerTag.startPosition) {
-                for (ProcessorRange modifyRange : modifyRanges) {
-                    ProcessorRange addRange = modifyRange.markRemoval(innerTag.startPosition, innerTag.startText);
-                    if (addRange != null) {
-                        modifyRanges.add(addRange);
-                        break;
-                    }
-                }
+                markRemoval(modifyRanges, sortedCopyRanges, innerTag.startPosition, innerTag.startText);
             }
 
             // Mark trailing text for removal
             if (innerTag.endText < innerTag.endPosition) {
-                for (ProcessorRange modifyRange : modifyRanges) {
-                    ProcessorRange addRange = modifyRange.markRemoval(innerTag.endText, innerTag.endPosition);
-                    if (addRange != null) {
-                        modifyRanges.add(addRange);
-                        break;
-                    }
-                }
+                markRemoval(modifyRanges, sortedCopyRanges, innerTag.endText, innerTag.endPosition);
             }
 
             // Insert text for newlines
@@ -272,6 +323,29 @@ public class SimpleMarkdownTextProcessor {
         return modifyRanges;
     }
 
+    private static void markRemoval(List<ProcessorRange> modifyRanges, NavigableSet<ProcessorRange> sortedCopyRanges, int removeStartPosition, int removeEndPosition) {
+        // Iterate from the first copy range ending after the start of the removal
+        // Copy ranges don't overlap, trimming them keeps their order and empty ones are dropped before they can collide with another range
+        ProcessorRange searchRange = new ProcessorRange(removeStartPosition, removeStartPosition, ProcessorRangeType.Copy);
+        Iterator<ProcessorRange> iterator = sortedCopyRanges.tailSet(searchRange, false).iterator();
+        while (iterator.hasNext()) {
+            // Split the range containing the removal, or trim all ranges overlapping with it (and drop the ones which become empty)
+            ProcessorRange range = iterator.next();
+            if (range.startPosition >= removeEndPosition) {
+                break;
+            }
+            ProcessorRange addRange = range.markRemoval(removeStartPosition, removeEndPosition);
+            if (addRange != null) {
+                modifyRanges.add(addRange);
+                sortedCopyRanges.add(addRange);
+                break;
+            }
+            if (!range.isValid()) {
+                iterator.remove();
+            }
+        }
+    }
+
     private List<ProcessorRange> getDeleteRanges(MarkdownTag sectionTag, List<ProcessorRange> copyRanges) {
         // Add delete range between each copy range
         ArrayList<ProcessorRange> result = new ArrayList<>();
@@ -312,11 +386,105 @@ public class SimpleMarkdownTextProcessor {
     }
 
 
+    // --
+    // Internal helper class to keep track of nested text styles while rearranging
+    // --
+
+    private static class RearrangeFrame {
+        final int tagIndex;
+        final int addWeight;
+        final int resultStartIndex;
+        int scanPosition;
+        int checkIndex;
+        int maxStartPosition;
+
+        RearrangeFrame(int tagIndex, int addWeight, int scanPosition, int resultStartIndex) {
+            this.tagIndex = tagIndex;
+            this.addWeight = addWeight;
+            this.scanPosition = scanPosition;
+            this.resultStartIndex = resultStartIndex;
+            checkIndex = tagIndex + 1;
+            maxStartPosition = Integer.MIN_VALUE;
+        }
+    }
+
+
+    // --
+    // Internal helper class to map positions in the section to the processed text
+    // --
+
+    private static class ProcessorShiftTable {
+        private final int[] deleteStartPositions;
+        private final int[] deleteEndPositions;
+        private final int[] deletedLengths;
+        private final int[] insertPositions;
+        private final int[] insertedLengths;
+        private int deleteCount = 0;
+        private int insertCount = 0;
+
+        ProcessorShiftTable(List<ProcessorRange> deleteRanges) {
+            // Store delete and insert ranges (both are sorted by position) with the total length of the ranges before them
+            deleteStartPositions = new int[deleteRanges.size()];
+            deleteEndPositions = new int[deleteRanges.size()];
+            deletedLengths = new int[deleteRanges.size() + 1];
+            insertPositions = new int[deleteRanges.size()];
+            insertedLengths = new int[deleteRanges.size() + 1];
+            for (ProcessorRange range : deleteRanges) {
+                if (range.type == ProcessorRangeType.Delete) {
+                    deleteStartPositions[deleteCount] = range.startPosition;
+                    deleteEndPositions[deleteCount] = range.endPosition;
+                    deletedLengths[deleteCount + 1] = deletedLengths[deleteCount] + range.endPosition - range.startPosition;
+                    deleteCount++;
+                } else if (range.type.isInsert()) {
+                    insertPositions[insertCount] = range.startPosition;
+                    insertedLengths[insertCount + 1] = insertedLengths[insertCount] + (range.insertText != null ? range.insertText.length() : 0);
+                    insertCount++;
+                }
+            }
+        }
+
+        int getDeletedBefore(int position) {
+            // Delete ranges don't overlap, only the last one starting before the position can be partially deleted before it
+            int index = countBefore(deleteStartPositions, deleteCount, position);
+            if (index == 0) {
+                return 0;
+            }
+            return deletedLengths[index - 1] + Math.min(deleteEndPositions[index - 1], position) - deleteStartPositions[index - 1];
+        }
+
+        int getInsertedBefore(int position) {
+            return insertedLengths[countBefore(insertPositions, insertCount, position)];
+        }
+
+        private static int countBefore(int[] positions, int count, int position) {
+            // Binary search for the amount of positions before the given one
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (positions[middle] < position) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+
     // --
     // Internal range helper class
     // --
 
     private static class ProcessorRange implements Comparable<ProcessorRange> {
+        static final Comparator<ProcessorRange> END_POSITION_ORDER = new Comparator<ProcessorRange>() {
+            @Override
+            public int compare(ProcessorRange range, ProcessorRange otherRange) {
+                return range.endPosition - otherRange.endPosition;
+            }
+        };
+
         int startPosition;
         int endPosition;
         ProcessorRangeType type;
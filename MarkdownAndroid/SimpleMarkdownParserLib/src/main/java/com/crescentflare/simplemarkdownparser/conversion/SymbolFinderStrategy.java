@@ -0,0 +1,12 @@
+package com.crescentflare.simplemarkdownparser.conversion;
+
+/**
+ * Simple markdown parser library: symbol finder strategy
+ * Determines which symbol finder implementation is used by the converter
+ */
+public enum SymbolFinderStrategy {
+    AlwaysJava,
+    AlwaysNative,
+    FixedThreshold,
+    AutoCalibrated
+}
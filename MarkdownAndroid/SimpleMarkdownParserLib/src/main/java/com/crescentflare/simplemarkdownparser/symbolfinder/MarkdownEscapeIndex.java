@@ -0,0 +1,146 @@
+package com.crescentflare.simplemarkdownparser.symbolfinder;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Simple markdown parser library: escape index
+ * Stores the escape symbols of a document sorted by position, shared by all tags of that document
+ * Escapes within a range are found with a binary search instead of being copied into each tag
+ */
+public class MarkdownEscapeIndex {
+
+    // --
+    // Members
+    // --
+
+    private final int[] lines;
+    private final int[] startPositions;
+    private final int[] endPositions;
+    private final int[] linePositions;
+    private int count;
+
+
+    // --
+    // Initialization
+    // --
+
+    private MarkdownEscapeIndex(int capacity) {
+        lines = new int[capacity];
+        startPositions = new int[capacity];
+        endPositions = new int[capacity];
+        linePositions = new int[capacity];
+        count = capacity;
+    }
+
+    @NotNull public static MarkdownEscapeIndex fromSymbols(@NotNull SimpleMarkdownSymbolStorage symbols) {
+        // Count escapes first to allocate at once, symbols in the storage are sorted (escapes at the same position are only added once)
+        int escapeCount = symbols.countSymbols(MarkdownSymbol.Type.Escape);
+        MarkdownEscapeIndex result = new MarkdownEscapeIndex(escapeCount);
+        int escapeIndex = 0;
+        for (int index = 0; index < symbols.size() && escapeIndex < escapeCount; index++) {
+            if (symbols.getType(index) == MarkdownSymbol.Type.Escape && (escapeIndex == 0 || result.startPositions[escapeIndex - 1] != symbols.getStartPosition(index))) {
+                result.lines[escapeIndex] = symbols.getLine(index);
+                result.startPositions[escapeIndex] = symbols.getStartPosition(index);
+                result.endPositions[escapeIndex] = symbols.getEndPosition(index);
+                result.linePositions[escapeIndex] = symbols.getLinePosition(index);
+                escapeIndex++;
+            }
+        }
+        result.count = escapeIndex;
+        return result;
+    }
+
+    @NotNull public static MarkdownEscapeIndex fromSymbols(@NotNull List<MarkdownSymbol> escapeSymbols) {
+        SimpleMarkdownSymbolStorage symbolStorage = new SimpleMarkdownSymbolStorage();
+        symbolStorage.ensureCapacity(escapeSymbols.size());
+        for (MarkdownSymbol symbol : escapeSymbols) {
+            if (symbol.type == MarkdownSymbol.Type.Escape) {
+                symbolStorage.addSymbol(symbol);
+            }
+        }
+        symbolStorage.sort();
+        return fromSymbols(symbolStorage);
+    }
+
+
+    // --
+    // Access
+    // --
+
+    public int size() {
+        return count;
+    }
+
+    public int getStartPosition(int index) {
+        return startPositions[index];
+    }
+
+    public int getEndPosition(int index) {
+        return endPositions[index];
+    }
+
+    public int findFirstIndex(int position) {
+        // Binary search for the first escape starting at or after the given position
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (startPositions[middle] < position) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    public boolean isEscapeCharacter(int position) {
+        int index = findFirstIndex(position);
+        return index < count && startPositions[index] == position;
+    }
+
+    @NotNull public List<MarkdownSymbol> symbolsInRange(int startPosition, int endPosition) {
+        // Return a read-only view on the escapes starting within the range, symbol objects are created when accessed
+        return symbolsInIndexRange(findFirstIndex(startPosition), findFirstIndex(endPosition));
+    }
+
+    @NotNull public List<MarkdownSymbol> symbolsInIndexRange(int fromIndex, int toIndex) {
+        if (fromIndex >= toIndex) {
+            return Collections.emptyList();
+        }
+        return new EscapeSymbolRange(fromIndex, toIndex);
+    }
+
+
+    // --
+    // Read-only list view on a range of escapes
+    // --
+
+    private class EscapeSymbolRange extends AbstractList<MarkdownSymbol> {
+        private final int fromIndex;
+        private final int toIndex;
+
+        EscapeSymbolRange(int fromIndex, int toIndex) {
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+        }
+
+        @Override
+        public MarkdownSymbol get(int index) {
+            if (index < 0 || index >= toIndex - fromIndex) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + (toIndex - fromIndex));
+            }
+            int escapeIndex = fromIndex + index;
+            return new MarkdownSymbol(MarkdownSymbol.Type.Escape, lines[escapeIndex], startPositions[escapeIndex], endPositions[escapeIndex], linePositions[escapeIndex]);
+        }
+
+        @Override
+        public int size() {
+            return toIndex - fromIndex;
+        }
+    }
+}
@@ -9,6 +9,13 @@ import org.jetbrains.annotations.Nullable;
  */
 public class MarkdownSymbol implements Comparable<MarkdownSymbol> {
 
+    // --
+    // Constants
+    // --
+
+    public static final int ALL_TYPES_MASK = (1 << Type.values().length) - 1;
+
+
     // --
     // Type enum
     // --
@@ -32,6 +39,18 @@ public class MarkdownSymbol implements Comparable<MarkdownSymbol> {
         public boolean isTextStyle() {
             return this == FirstTextStyle || this == SecondTextStyle || this == ThirdTextStyle;
         }
+
+        public int mask() {
+            return 1 << ordinal();
+        }
+
+        public static int mask(@NotNull Type... types) {
+            int result = 0;
+            for (Type type : types) {
+                result |= type.mask();
+            }
+            return result;
+        }
     }
 
 
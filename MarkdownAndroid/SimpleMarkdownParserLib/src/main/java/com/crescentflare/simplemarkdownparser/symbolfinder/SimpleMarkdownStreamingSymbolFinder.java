@@ -0,0 +1,16 @@
+package com.crescentflare.simplemarkdownparser.symbolfinder;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Simple markdown parser library: streaming symbol finder interface class
+ * A symbol finder which can also scan text from a char sequence or in chunks from a reader, without converting it to a string first
+ * Implemented by the symbol finders of the library, other implementations of the symbol finder interface don't need to support it
+ */
+public interface SimpleMarkdownStreamingSymbolFinder extends SimpleMarkdownSymbolFinder {
+    void scanText(@NotNull CharSequence text);
+    void scan(@NotNull Reader reader) throws IOException;
+}
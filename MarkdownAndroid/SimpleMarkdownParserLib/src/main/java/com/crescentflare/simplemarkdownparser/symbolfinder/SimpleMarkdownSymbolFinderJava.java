@@ -2,11 +2,14 @@ package com.crescentflare.simplemarkdownparser.symbolfinder;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+import java.io.Reader;
+
 /**
  * Simple markdown parser library: symbol finder java class
  * Implements the symbol finder in java
  */
-public class SimpleMarkdownSymbolFinderJava implements SimpleMarkdownSymbolFinder {
+public class SimpleMarkdownSymbolFinderJava implements SimpleMarkdownStreamingSymbolFinder {
 
     // --
     // Members
@@ -32,8 +35,13 @@ public class SimpleMarkdownSymbolFinderJava implements SimpleMarkdownSymbolFinde
     }
 
     public void scanText(@NotNull String text) {
+        scanText((CharSequence)text);
+    }
+
+    public void scanText(@NotNull CharSequence text) {
         // Prepare
         symbolStorage.clearSymbols();
+        resetState();
 
         // Scan text
         for (int i = 0; i < text.length(); i++) {
@@ -44,11 +52,42 @@ public class SimpleMarkdownSymbolFinderJava implements SimpleMarkdownSymbolFinde
         finalizeScanning();
     }
 
+    public void scan(@NotNull Reader reader) throws IOException {
+        // Prepare
+        symbolStorage.clearSymbols();
+        resetState();
+
+        // Scan text in chunks
+        char[] chunk = new char[4096];
+        int position = 0;
+        int count;
+        while ((count = reader.read(chunk)) >= 0) {
+            for (int i = 0; i < count; i++) {
+                addCharacter(position + i, chunk[i]);
+            }
+            position += count;
+        }
+
+        // Finalize
+        finalizeScanning();
+    }
+
 
     // --
     // Internal symbol finder
     // --
 
+    private void resetState() {
+        currentLine = 0;
+        linePosition = 0;
+        lastEscapePosition = -100;
+        currentTextBlockSymbol = null;
+        currentHeaderSymbol = null;
+        currentTextStyleSymbol = null;
+        currentListItemSymbol = null;
+        needListDotSeparator = false;
+    }
+
     private void addCharacter(int position, Character character) {
         // Handle character escaping
         boolean escaped;
@@ -2,11 +2,20 @@ package com.crescentflare.simplemarkdownparser.symbolfinder;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
 /**
  * Simple markdown parser library: symbol finder native interface class
  * Implements the symbol finder through native code
+ * The native code writes sorted symbols into a reusable buffer, they are transferred into the symbol storage when it's requested
+ * The native scanner keeps its symbols until they are written, so the buffer is sized to the exact symbol count without scanning again
+ * Strings are scanned in one go, other text is passed in chunks to the scanner which keeps the symbols in progress
  */
-public class SimpleMarkdownSymbolFinderNative implements SimpleMarkdownSymbolFinder {
+public class SimpleMarkdownSymbolFinderNative implements SimpleMarkdownStreamingSymbolFinder {
 
     // --
     // Import native library
@@ -17,11 +26,26 @@ public class SimpleMarkdownSymbolFinderNative implements SimpleMarkdownSymbolFin
     }
 
 
+    // --
+    // Constants
+    // --
+
+    private static final int FIELD_COUNT = 5;
+    private static final int MINIMUM_BUFFER_CAPACITY = 64;
+    private static final int CHUNK_SIZE = 4096;
+
+
     // --
     // Members
     // --
 
     private final SimpleMarkdownSymbolStorage symbolStorage = new SimpleMarkdownSymbolStorage();
+    private ByteBuffer symbolBuffer;
+    private IntBuffer symbolColumns;
+    private int symbolBufferCapacity = 0;
+    private int symbolCount = 0;
+    private boolean symbolStorageLoaded = true;
+    private char[] chunk;
 
 
     // --
@@ -29,90 +53,113 @@ public class SimpleMarkdownSymbolFinderNative implements SimpleMarkdownSymbolFin
     // --
 
     @NotNull public SimpleMarkdownSymbolStorage getSymbolStorage() {
+        if (!symbolStorageLoaded) {
+            symbolStorage.setSymbols(symbolColumns, symbolBufferCapacity, symbolCount);
+            symbolStorageLoaded = true;
+        }
         return symbolStorage;
     }
 
+    public void trimCapacity(int maxCapacity) {
+        getSymbolStorage().trimCapacity(maxCapacity);
+    }
+
+    public void trimBufferCapacity(int maxCapacity) {
+        // Found symbols are moved into the storage first, then the buffer is dropped and allocated again when needed
+        // Direct buffers are expensive to allocate, use a bigger limit than for the storage to keep reusing it for most documents
+        getSymbolStorage();
+        if (symbolBufferCapacity > maxCapacity) {
+            symbolBuffer = null;
+            symbolColumns = null;
+            symbolBufferCapacity = 0;
+            symbolCount = 0;
+        }
+    }
+
     public void scanText(@NotNull String text) {
-        // Prepare
-        symbolStorage.clearSymbols();
+        long scanner = beginNativeScan();
+        try {
+            scanNativeString(scanner, text);
+            finishNativeScan(scanner);
+        } finally {
+            destroyNativeScanner(scanner);
+        }
+    }
 
-        // Scan text
-        int[] nativeSymbols = scanNativeText(text);
-        int count = getSymbolCount(nativeSymbols);
-        for (int i = 0; i < count; i++) {
-            MarkdownSymbol symbol = getConvertedSymbol(nativeSymbols, i);
-            if (symbol != null) {
-                symbolStorage.addSymbol(symbol);
+    public void scanText(@NotNull CharSequence text) {
+        if (text instanceof String) {
+            scanText((String)text);
+            return;
+        }
+        long scanner = beginNativeScan();
+        try {
+            int length = text.length();
+            for (int offset = 0; offset < length; offset += CHUNK_SIZE) {
+                int count = Math.min(CHUNK_SIZE, length - offset);
+                for (int i = 0; i < count; i++) {
+                    chunk[i] = text.charAt(offset + i);
+                }
+                scanNativeChunk(scanner, chunk, count);
             }
+            finishNativeScan(scanner);
+        } finally {
+            destroyNativeScanner(scanner);
         }
-
-        // Finalize
-        symbolStorage.sort();
-        symbolStorage.cleanOverlaps();
     }
 
-    private native int[] scanNativeText(String markdownText);
+    public void scan(@NotNull Reader reader) throws IOException {
+        long scanner = beginNativeScan();
+        try {
+            int count;
+            while ((count = reader.read(chunk, 0, CHUNK_SIZE)) >= 0) {
+                scanNativeChunk(scanner, chunk, count);
+            }
+            finishNativeScan(scanner);
+        } finally {
+            destroyNativeScanner(scanner);
+        }
+    }
 
 
     // --
-    // Native conversion
+    // Native scanner
     // --
 
-    private static final int FIELD_COUNT = 5;
-
-    private int getSymbolCount(final int[] nativeSymbols) {
-        if (nativeSymbols == null) {
-            return 0;
+    private long beginNativeScan() {
+        symbolStorage.clearSymbols();
+        symbolCount = 0;
+        symbolStorageLoaded = true;
+        if (chunk == null) {
+            chunk = new char[CHUNK_SIZE];
         }
-        return nativeSymbols.length / FIELD_COUNT;
+        return createNativeScanner();
     }
 
-    private MarkdownSymbol getConvertedSymbol(final int[] nativeSymbols, int position) {
-        position *= FIELD_COUNT;
-        MarkdownSymbol.Type type = getConvertedSymbolType(nativeSymbols[position]);
-        if (type != null) {
-            return new MarkdownSymbol(
-                    type,
-                    nativeSymbols[position + 1],
-                    nativeSymbols[position + 2],
-                    nativeSymbols[position + 3],
-                    nativeSymbols[position + 4]
-            );
-        }
-        return null;
+    private void finishNativeScan(long scanner) {
+        int count = finalizeNativeScanner(scanner);
+        ensureBufferCapacity(count);
+        writeNativeSymbols(scanner, symbolBuffer);
+        symbolCount = count;
+        symbolStorageLoaded = count == 0;
     }
 
-    private MarkdownSymbol.Type getConvertedSymbolType(int nativeEnumValue) {
-        switch (nativeEnumValue) {
-            case 1:
-                return MarkdownSymbol.Type.Escape;
-            case 2:
-                return MarkdownSymbol.Type.DoubleQuote;
-            case 3:
-                return MarkdownSymbol.Type.TextBlock;
-            case 4:
-                return MarkdownSymbol.Type.Newline;
-            case 5:
-                return MarkdownSymbol.Type.Header;
-            case 6:
-                return MarkdownSymbol.Type.FirstTextStyle;
-            case 7:
-                return MarkdownSymbol.Type.SecondTextStyle;
-            case 8:
-                return MarkdownSymbol.Type.ThirdTextStyle;
-            case 9:
-                return MarkdownSymbol.Type.OrderedListItem;
-            case 10:
-                return MarkdownSymbol.Type.UnorderedListItem;
-            case 11:
-                return MarkdownSymbol.Type.OpenLink;
-            case 12:
-                return MarkdownSymbol.Type.CloseLink;
-            case 13:
-                return MarkdownSymbol.Type.OpenUrl;
-            case 14:
-                return MarkdownSymbol.Type.CloseUrl;
+    private native long createNativeScanner();
+    private native void scanNativeString(long scanner, String markdownText);
+    private native void scanNativeChunk(long scanner, char[] chunk, int count);
+    private native int finalizeNativeScanner(long scanner);
+    private native void writeNativeSymbols(long scanner, ByteBuffer symbolBuffer);
+    private native void destroyNativeScanner(long scanner);
+
+
+    // --
+    // Buffer handling
+    // --
+
+    private void ensureBufferCapacity(int capacity) {
+        if (symbolBuffer == null || capacity > symbolBufferCapacity) {
+            symbolBufferCapacity = Math.max(MINIMUM_BUFFER_CAPACITY, Math.max(capacity, symbolBufferCapacity * 2));
+            symbolBuffer = ByteBuffer.allocateDirect(symbolBufferCapacity * FIELD_COUNT * 4).order(ByteOrder.nativeOrder());
+            symbolColumns = symbolBuffer.asIntBuffer();
         }
-        return null;
     }
 }
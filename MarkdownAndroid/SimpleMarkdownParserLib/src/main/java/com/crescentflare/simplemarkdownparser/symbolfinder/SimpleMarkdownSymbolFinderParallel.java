@@ -0,0 +1,226 @@
+package com.crescentflare.simplemarkdownparser.symbolfinder;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Simple markdown parser library: symbol finder parallel class
+ * Splits large texts after unescaped newlines (where no symbol can be in progress) and scans the parts on an executor
+ * The symbols of each part are shifted to their position in the full text, the result is the same as a sequential scan
+ * Parts which the executor didn't start yet are scanned on the calling thread while waiting, so scanning from a task on the same (or a saturated) executor can't deadlock
+ */
+public class SimpleMarkdownSymbolFinderParallel implements SimpleMarkdownStreamingSymbolFinder {
+
+    // --
+    // Constants
+    // --
+
+    public static final int DEFAULT_MINIMUM_PART_SIZE = 64 * 1024;
+
+
+    // --
+    // Members
+    // --
+
+    private final SimpleMarkdownSymbolStorage symbolStorage = new SimpleMarkdownSymbolStorage();
+    private final List<SimpleMarkdownSymbolFinderPrimitive> partSymbolFinders = new ArrayList<>();
+    private final ExecutorService executor;
+    private final int maximumParts;
+    private final int minimumPartSize;
+
+
+    // --
+    // Initialization
+    // --
+
+    public SimpleMarkdownSymbolFinderParallel(@NotNull ExecutorService executor) {
+        this(executor, Runtime.getRuntime().availableProcessors(), DEFAULT_MINIMUM_PART_SIZE);
+    }
+
+    public SimpleMarkdownSymbolFinderParallel(@NotNull ExecutorService executor, int maximumParts, int minimumPartSize) {
+        this.executor = executor;
+        this.maximumParts = Math.max(1, maximumParts);
+        this.minimumPartSize = Math.max(1, minimumPartSize);
+    }
+
+
+    // --
+    // Scanning text
+    // --
+
+    @NotNull public SimpleMarkdownSymbolStorage getSymbolStorage() {
+        return symbolStorage;
+    }
+
+    public void trimCapacity(int maxCapacity) {
+        // Symbols of the parts are already merged into the storage, they are cleared before trimming
+        symbolStorage.trimCapacity(maxCapacity);
+        for (SimpleMarkdownSymbolFinderPrimitive partSymbolFinder : partSymbolFinders) {
+            partSymbolFinder.getSymbolStorage().clearSymbols();
+            partSymbolFinder.trimCapacity(maxCapacity);
+        }
+    }
+
+    public void scanText(@NotNull final String text) {
+        // Determine parts, scan sequentially if the text is too small to split
+        int[] partPositions = findPartPositions(text);
+        int partCount = partPositions.length - 1;
+        while (partSymbolFinders.size() < partCount) {
+            partSymbolFinders.add(new SimpleMarkdownSymbolFinderPrimitive());
+        }
+        if (partCount == 1) {
+            partSymbolFinders.get(0).scanText(text);
+            copyResult(partSymbolFinders.get(0));
+            return;
+        }
+
+        // Scan all parts except the first one on the executor, the first part is scanned on the calling thread
+        List<FutureTask<Void>> tasks = new ArrayList<>();
+        for (int i = 1; i < partCount; i++) {
+            final SimpleMarkdownSymbolFinderPrimitive partSymbolFinder = partSymbolFinders.get(i);
+            final int startPosition = partPositions[i];
+            final int endPosition = partPositions[i + 1];
+            FutureTask<Void> task = new FutureTask<>(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    partSymbolFinder.scanText(text, startPosition, endPosition);
+                    return null;
+                }
+            });
+            tasks.add(task);
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException ignored) {
+                // The task is run on the calling thread while waiting for the parts
+            }
+        }
+        partSymbolFinders.get(0).scanText(text, 0, partPositions[1]);
+        waitForParts(tasks);
+
+        // Merge parts, each part starts at the beginning of a line
+        int totalSymbols = 0;
+        for (int i = 0; i < partCount; i++) {
+            totalSymbols += partSymbolFinders.get(i).getSymbolStorage().size();
+        }
+        symbolStorage.clearSymbols();
+        symbolStorage.ensureCapacity(totalSymbols);
+        int lineOffset = 0;
+        for (int i = 0; i < partCount; i++) {
+            SimpleMarkdownSymbolStorage partStorage = partSymbolFinders.get(i).getSymbolStorage();
+            symbolStorage.appendSymbols(partStorage, partPositions[i], lineOffset);
+            lineOffset += partStorage.countSymbols(MarkdownSymbol.Type.Newline);
+        }
+    }
+
+    public void scanText(@NotNull CharSequence text) {
+        if (text instanceof String) {
+            scanText((String)text);
+        } else {
+            obtainSequentialSymbolFinder().scanText(text);
+            copyResult(partSymbolFinders.get(0));
+        }
+    }
+
+    public void scan(@NotNull Reader reader) throws IOException {
+        obtainSequentialSymbolFinder().scan(reader);
+        copyResult(partSymbolFinders.get(0));
+    }
+
+
+    // --
+    // Splitting text
+    // --
+
+    private int[] findPartPositions(String text) {
+        // Split after a newline near each target position, stop splitting when no newline could be found
+        int length = text.length();
+        int partCount = (int)Math.max(1, Math.min(maximumParts, (long)length / minimumPartSize));
+        int[] positions = new int[partCount + 1];
+        int foundParts = 1;
+        for (int i = 1; i < partCount; i++) {
+            int splitPosition = findSplitPosition(text, Math.max(positions[foundParts - 1], (int)((long)length * i / partCount)));
+            if (splitPosition < 0 || splitPosition >= length) {
+                break;
+            }
+            positions[foundParts++] = splitPosition;
+        }
+        positions[foundParts] = length;
+        if (foundParts < partCount) {
+            int[] result = new int[foundParts + 1];
+            System.arraycopy(positions, 0, result, 0, foundParts + 1);
+            return result;
+        }
+        return positions;
+    }
+
+    private static int findSplitPosition(String text, int fromPosition) {
+        // Newlines are escaped by an odd number of backslashes in front of them
+        int position = text.indexOf('\n', fromPosition);
+        while (position >= 0) {
+            int backslashes = 0;
+            while (position - backslashes > 0 && text.charAt(position - backslashes - 1) == '\\') {
+                backslashes++;
+            }
+            if (backslashes % 2 == 0) {
+                return position + 1;
+            }
+            position = text.indexOf('\n', position + 1);
+        }
+        return -1;
+    }
+
+
+    // --
+    // Helpers
+    // --
+
+    private SimpleMarkdownSymbolFinderPrimitive obtainSequentialSymbolFinder() {
+        if (partSymbolFinders.size() == 0) {
+            partSymbolFinders.add(new SimpleMarkdownSymbolFinderPrimitive());
+        }
+        return partSymbolFinders.get(0);
+    }
+
+    private void copyResult(SimpleMarkdownSymbolFinder symbolFinder) {
+        symbolStorage.clearSymbols();
+        symbolStorage.appendSymbols(symbolFinder.getSymbolStorage(), 0, 0);
+    }
+
+    private static void waitForParts(List<FutureTask<Void>> tasks) {
+        // Wait for all parts, also when one of them fails, then report the first failure
+        // Tasks which didn't start yet are run on the calling thread (running a started or finished task does nothing)
+        RuntimeException failure = null;
+        boolean interrupted = false;
+        for (FutureTask<Void> task : tasks) {
+            task.run();
+            while (true) {
+                try {
+                    task.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof RuntimeException ? (RuntimeException)e.getCause() : new RuntimeException(e.getCause());
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.crescentflare.simplemarkdownparser.symbolfinder;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Simple markdown parser library: symbol finder primitive class
+ * Implements the symbol finder in java, keeping all in-progress symbols in primitive fields
+ * Produces the same output as the java symbol finder without allocating objects for each symbol
+ * Text is scanned in chunks of a fixed size, symbols in progress carry over to the next chunk
+ * A symbol type mask can be set to only store the symbols which are needed, for example to extract headers or links
+ */
+public class SimpleMarkdownSymbolFinderPrimitive implements SimpleMarkdownStreamingSymbolFinder {
+
+    // --
+    // Constants
+    // --
+
+    private static final boolean[] SYMBOL_CHARACTERS = new boolean[128];
+    private static final int CHUNK_SIZE = 4096;
+
+    static {
+        for (char character : "\\\"\n#*_~[]()".toCharArray()) {
+            SYMBOL_CHARACTERS[character] = true;
+        }
+    }
+
+
+    // --
+    // Members
+    // --
+
+    private final SimpleMarkdownSymbolStorage symbolStorage = new SimpleMarkdownSymbolStorage();
+    private final char[] chunk = new char[CHUNK_SIZE];
+    private int symbolTypeMask = MarkdownSymbol.ALL_TYPES_MASK;
+    private int scanPosition = 0;
+    private int currentLine = 0;
+    private int linePosition = 0;
+    private int lastEscapePosition = -100;
+
+    private int textBlockStart = -1;
+    private int textBlockEnd = 0;
+    private int textBlockLine = 0;
+    private int textBlockLinePosition = 0;
+
+    private int headerStart = -1;
+    private int headerEnd = 0;
+    private int headerLine = 0;
+    private int headerLinePosition = 0;
+
+    @Nullable private MarkdownSymbol.Type textStyleType = null;
+    private int textStyleStart = 0;
+    private int textStyleEnd = 0;
+    private int textStyleLine = 0;
+    private int textStyleLinePosition = 0;
+
+    @Nullable private MarkdownSymbol.Type listItemType = null;
+    private int listItemStart = 0;
+    private int listItemEnd = 0;
+    private int listItemLine = 0;
+    private int listItemLinePosition = 0;
+    private boolean needListDotSeparator = false;
+
+
+    // --
+    // Scanning text
+    // --
+
+    @NotNull public SimpleMarkdownSymbolStorage getSymbolStorage() {
+        return symbolStorage;
+    }
+
+    public int getSymbolTypeMask() {
+        return symbolTypeMask;
+    }
+
+    public void setSymbolTypeMask(int symbolTypeMask) {
+        this.symbolTypeMask = symbolTypeMask;
+    }
+
+    public void trimCapacity(int maxCapacity) {
+        symbolStorage.trimCapacity(maxCapacity);
+    }
+
+    public void scanText(@NotNull String text) {
+        scanText(text, 0, text.length());
+    }
+
+    void scanText(@NotNull String text, int startPosition, int endPosition) {
+        // Scan part of the text, symbol positions are relative to the start position
+        resetState();
+        for (int offset = startPosition; offset < endPosition; offset += CHUNK_SIZE) {
+            int count = Math.min(CHUNK_SIZE, endPosition - offset);
+            text.getChars(offset, offset + count, chunk, 0);
+            scanChunk(chunk, count);
+        }
+        finalizeScanning();
+    }
+
+    public void scanText(@NotNull CharSequence text) {
+        if (text instanceof String) {
+            scanText((String)text);
+            return;
+        }
+        resetState();
+        int length = text.length();
+        for (int offset = 0; offset < length; offset += CHUNK_SIZE) {
+            int count = Math.min(CHUNK_SIZE, length - offset);
+            for (int i = 0; i < count; i++) {
+                chunk[i] = text.charAt(offset + i);
+            }
+            scanChunk(chunk, count);
+        }
+        finalizeScanning();
+    }
+
+    public void scan(@NotNull Reader reader) throws IOException {
+        resetState();
+        int count;
+        while ((count = reader.read(chunk, 0, CHUNK_SIZE)) >= 0) {
+            scanChunk(chunk, count);
+        }
+        finalizeScanning();
+    }
+
+
+    // --
+    // Internal symbol finder
+    // --
+
+    private void resetState() {
+        symbolStorage.clearSymbols();
+        scanPosition = 0;
+        currentLine = 0;
+        linePosition = 0;
+        lastEscapePosition = -100;
+        textBlockStart = -1;
+        headerStart = -1;
+        textStyleType = null;
+        listItemType = null;
+        needListDotSeparator = false;
+    }
+
+    private void scanChunk(char[] characters, int count) {
+        // Skip over runs of plain characters when no symbol is in progress
+        int index = 0;
+        while (index < count) {
+            if (canSkipPlainCharacters(scanPosition + index)) {
+                int runStartIndex = index;
+                while (index < count) {
+                    char character = characters[index];
+                    if (character < 128 && SYMBOL_CHARACTERS[character]) {
+                        break;
+                    }
+                    if (character != ' ' && character != '\t') {
+                        textBlockEnd = scanPosition + index + 1;
+                    }
+                    index++;
+                }
+                linePosition += index - runStartIndex;
+                if (index == count) {
+                    break;
+                }
+            }
+            addCharacter(scanPosition + index, characters[index]);
+            index++;
+        }
+        scanPosition += count;
+    }
+
+    private boolean canSkipPlainCharacters(int position) {
+        // Plain characters only extend the text block when it's already started and nothing else is in progress (including escaping)
+        return textBlockStart >= 0 && headerStart < 0 && textStyleType == null && listItemType == null && lastEscapePosition != position - 1;
+    }
+
+    private void addCharacter(int position, char character) {
+        // Handle character escaping
+        boolean escaped;
+        if (character == '\\') {
+            if (lastEscapePosition != position - 1) {
+                lastEscapePosition = position;
+                addSymbol(MarkdownSymbol.Type.Escape, currentLine, position, position + 1, linePosition);
+            }
+            escaped = true;
+        } else {
+            escaped = lastEscapePosition == position - 1;
+        }
+
+        // Check for double quotes
+        if (!escaped && character == '\"') {
+            addSymbol(MarkdownSymbol.Type.DoubleQuote, currentLine, position, position + 1, linePosition);
+        }
+
+        // Check for text blocks
+        boolean isTextCharacter = escaped || (character != ' ' && character != '\n' && character != '\t');
+        if (textBlockStart >= 0) {
+            if (isTextCharacter) {
+                textBlockEnd = position + 1;
+            }
+        } else if (isTextCharacter) {
+            textBlockStart = position;
+            textBlockEnd = position + 1;
+            textBlockLine = currentLine;
+            textBlockLinePosition = linePosition;
+        }
+
+        // Check for newlines
+        if (character == '\n' && !escaped) {
+            if (textBlockStart >= 0) {
+                addSymbol(MarkdownSymbol.Type.TextBlock, textBlockLine, textBlockStart, textBlockEnd, textBlockLinePosition);
+                textBlockStart = -1;
+            }
+            addSymbol(MarkdownSymbol.Type.Newline, currentLine, position, position + 1, linePosition);
+        }
+
+        // Check for headers
+        boolean isHeaderCharacter = character == '#' && !escaped;
+        if (headerStart >= 0) {
+            if (isHeaderCharacter) {
+                headerEnd = position + 1;
+            } else {
+                addSymbol(MarkdownSymbol.Type.Header, headerLine, headerStart, headerEnd, headerLinePosition);
+                headerStart = -1;
+            }
+        } else if (isHeaderCharacter) {
+            headerStart = position;
+            headerEnd = position + 1;
+            headerLine = currentLine;
+            headerLinePosition = linePosition;
+        }
+
+        // Check for text styles
+        MarkdownSymbol.Type foundTextStyleType = null;
+        if (!escaped) {
+            if (character == '*') {
+                foundTextStyleType = MarkdownSymbol.Type.FirstTextStyle;
+            } else if (character == '_') {
+                foundTextStyleType = MarkdownSymbol.Type.SecondTextStyle;
+            } else if (character == '~') {
+                foundTextStyleType = MarkdownSymbol.Type.ThirdTextStyle;
+            }
+        }
+        if (textStyleType != null && textStyleType == foundTextStyleType) {
+            textStyleEnd = position + 1;
+        } else {
+            if (textStyleType != null) {
+                addSymbol(textStyleType, textStyleLine, textStyleStart, textStyleEnd, textStyleLinePosition);
+            }
+            textStyleType = foundTextStyleType;
+            if (foundTextStyleType != null) {
+                textStyleStart = position;
+                textStyleEnd = position + 1;
+                textStyleLine = currentLine;
+                textStyleLinePosition = linePosition;
+            }
+        }
+
+        // Check for lists
+        if (!escaped) {
+            if (listItemType != null) {
+                if (listItemType == MarkdownSymbol.Type.UnorderedListItem && character == ' ') {
+                    addSymbol(listItemType, listItemLine, listItemStart, listItemEnd, listItemLinePosition);
+                    listItemType = null;
+                } else if (listItemType == MarkdownSymbol.Type.OrderedListItem) {
+                    if (needListDotSeparator && ((character >= '0' && character <= '9') || character == '.')) {
+                        listItemEnd = position + 1;
+                        if (character == '.') {
+                            needListDotSeparator = false;
+                        }
+                    } else if (!needListDotSeparator && character == ' ') {
+                        addSymbol(listItemType, listItemLine, listItemStart, listItemEnd, listItemLinePosition);
+                        listItemType = null;
+                    } else {
+                        listItemType = null;
+                    }
+                } else {
+                    listItemType = null;
+                }
+            } else if (textBlockStart == position) {
+                boolean isBulletCharacter = character == '*' || character == '+' || character == '-';
+                if (isBulletCharacter || (character >= '0' && character <= '9')) {
+                    listItemType = isBulletCharacter ? MarkdownSymbol.Type.UnorderedListItem : MarkdownSymbol.Type.OrderedListItem;
+                    listItemStart = position;
+                    listItemEnd = position + 1;
+                    listItemLine = currentLine;
+                    listItemLinePosition = linePosition;
+                    needListDotSeparator = !isBulletCharacter;
+                }
+            }
+        } else {
+            listItemType = null;
+        }
+
+        // Check for links
+        if (!escaped) {
+            if (character == '[') {
+                addSymbol(MarkdownSymbol.Type.OpenLink, currentLine, position, position + 1, linePosition);
+            } else if (character == ']') {
+                addSymbol(MarkdownSymbol.Type.CloseLink, currentLine, position, position + 1, linePosition);
+            } else if (character == '(') {
+                addSymbol(MarkdownSymbol.Type.OpenUrl, currentLine, position, position + 1, linePosition);
+            } else if (character == ')') {
+                addSymbol(MarkdownSymbol.Type.CloseUrl, currentLine, position, position + 1, linePosition);
+            }
+        }
+
+        // Update line position
+        if (!escaped && character == '\n') {
+            linePosition = 0;
+            currentLine += 1;
+        } else if (lastEscapePosition != position) {
+            linePosition += 1;
+        }
+    }
+
+    private void finalizeScanning() {
+        // Finish symbol finders in progress
+        if (textBlockStart >= 0) {
+            addSymbol(MarkdownSymbol.Type.TextBlock, textBlockLine, textBlockStart, textBlockEnd, textBlockLinePosition);
+            textBlockStart = -1;
+        }
+        if (headerStart >= 0) {
+            addSymbol(MarkdownSymbol.Type.Header, headerLine, headerStart, headerEnd, headerLinePosition);
+            headerStart = -1;
+        }
+        if (textStyleType != null) {
+            addSymbol(textStyleType, textStyleLine, textStyleStart, textStyleEnd, textStyleLinePosition);
+            textStyleType = null;
+        }
+
+        // Sort found symbols and remove duplicates
+        symbolStorage.sort();
+        symbolStorage.cleanOverlaps();
+    }
+
+    private void addSymbol(@NotNull MarkdownSymbol.Type type, int line, int startPosition, int endPosition, int linePosition) {
+        if ((symbolTypeMask & type.mask()) != 0) {
+            symbolStorage.addSymbol(type, line, startPosition, endPosition, linePosition);
+        }
+    }
+}
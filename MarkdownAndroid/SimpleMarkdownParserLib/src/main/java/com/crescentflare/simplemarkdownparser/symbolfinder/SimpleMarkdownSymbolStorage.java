@@ -2,21 +2,39 @@ package com.crescentflare.simplemarkdownparser.symbolfinder;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.nio.IntBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * Simple markdown parser library: symbol storage
  * Stores markdown symbols being found during text scanning
+ * Symbol fields are stored in growable int arrays (one for each field), use the indexed getters to read them without creating symbol objects
  */
 public class SimpleMarkdownSymbolStorage
 {
+    // --
+    // Constants
+    // --
+
+    private static final MarkdownSymbol.Type[] SYMBOL_TYPES = MarkdownSymbol.Type.values();
+    private static final int INITIAL_CAPACITY = 64;
+
+
     // --
     // Members
     // --
 
-    @NotNull public List<MarkdownSymbol> symbols = new ArrayList<>();
+    @NotNull public final List<MarkdownSymbol> symbols = new SymbolListView();
+    private int[] types = new int[INITIAL_CAPACITY];
+    private int[] lines = new int[INITIAL_CAPACITY];
+    private int[] startPositions = new int[INITIAL_CAPACITY];
+    private int[] endPositions = new int[INITIAL_CAPACITY];
+    private int[] linePositions = new int[INITIAL_CAPACITY];
+    private int count = 0;
+    private long[] sortKeys = new long[0];
+    private int[] sortBuffer = new int[0];
 
 
     // --
@@ -24,15 +42,155 @@ public class SimpleMarkdownSymbolStorage
     // --
 
     public void addSymbol(@NotNull MarkdownSymbol symbol) {
-        symbols.add(symbol);
+        addSymbol(symbol.type, symbol.line, symbol.startPosition, symbol.endPosition, symbol.linePosition);
+    }
+
+    public void addSymbol(@NotNull MarkdownSymbol.Type type, int line, int startPosition, int endPosition, int linePosition) {
+        if (count == types.length) {
+            ensureCapacity(count + 1);
+        }
+        types[count] = type.ordinal();
+        lines[count] = line;
+        startPositions[count] = startPosition;
+        endPositions[count] = endPosition;
+        linePositions[count] = linePosition;
+        count++;
     }
 
     public void clearSymbols() {
-        symbols = new ArrayList<>();
+        count = 0;
     }
 
     public void sort() {
-        Collections.sort(symbols);
+        // Return early if already sorted
+        boolean sorted = true;
+        for (int i = 1; i < count; i++) {
+            if (startPositions[i] < startPositions[i - 1]) {
+                sorted = false;
+                break;
+            }
+        }
+        if (sorted) {
+            return;
+        }
+
+        // Sort on position, the original index is part of the key to keep the sort stable
+        if (sortKeys.length < count) {
+            sortKeys = new long[types.length];
+            sortBuffer = new int[types.length];
+        }
+        for (int i = 0; i < count; i++) {
+            sortKeys[i] = ((long)startPositions[i] << 32) | i;
+        }
+        Arrays.sort(sortKeys, 0, count);
+
+        // Reorder all fields
+        reorder(types);
+        reorder(lines);
+        reorder(startPositions);
+        reorder(endPositions);
+        reorder(linePositions);
+    }
+
+    void setSymbols(@NotNull IntBuffer columns, int columnCapacity, int symbolCount) {
+        // Bulk copy from a buffer with a column for each field (in the same order as the storage fields), symbols should already be sorted
+        count = 0;
+        ensureCapacity(symbolCount);
+        readColumn(columns, 0, types, symbolCount);
+        readColumn(columns, columnCapacity, lines, symbolCount);
+        readColumn(columns, columnCapacity * 2, startPositions, symbolCount);
+        readColumn(columns, columnCapacity * 3, endPositions, symbolCount);
+        readColumn(columns, columnCapacity * 4, linePositions, symbolCount);
+        count = symbolCount;
+    }
+
+    void appendSymbols(@NotNull SimpleMarkdownSymbolStorage other, int positionOffset, int lineOffset) {
+        appendSymbols(other, 0, other.count, positionOffset, lineOffset);
+    }
+
+    public void appendSymbols(@NotNull SimpleMarkdownSymbolStorage other, int fromIndex, int toIndex, int positionOffset, int lineOffset) {
+        // Copy a range of symbols from another storage, shifting their positions and lines
+        int copyCount = toIndex - fromIndex;
+        ensureCapacity(count + copyCount);
+        System.arraycopy(other.types, fromIndex, types, count, copyCount);
+        System.arraycopy(other.linePositions, fromIndex, linePositions, count, copyCount);
+        for (int i = 0; i < copyCount; i++) {
+            lines[count + i] = other.lines[fromIndex + i] + lineOffset;
+            startPositions[count + i] = other.startPositions[fromIndex + i] + positionOffset;
+            endPositions[count + i] = other.endPositions[fromIndex + i] + positionOffset;
+        }
+        count += copyCount;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > types.length) {
+            int newCapacity = Math.max(capacity, types.length * 2);
+            types = Arrays.copyOf(types, newCapacity);
+            lines = Arrays.copyOf(lines, newCapacity);
+            startPositions = Arrays.copyOf(startPositions, newCapacity);
+            endPositions = Arrays.copyOf(endPositions, newCapacity);
+            linePositions = Arrays.copyOf(linePositions, newCapacity);
+        }
+    }
+
+    public void trimCapacity(int maxCapacity) {
+        // Shrink arrays grown beyond the given capacity (keeping the symbols), sort buffers are dropped and allocated again when needed
+        if (types.length > maxCapacity && types.length > INITIAL_CAPACITY) {
+            int newCapacity = Math.max(count, INITIAL_CAPACITY);
+            types = Arrays.copyOf(types, newCapacity);
+            lines = Arrays.copyOf(lines, newCapacity);
+            startPositions = Arrays.copyOf(startPositions, newCapacity);
+            endPositions = Arrays.copyOf(endPositions, newCapacity);
+            linePositions = Arrays.copyOf(linePositions, newCapacity);
+        }
+        if (sortKeys.length > maxCapacity) {
+            sortKeys = new long[0];
+            sortBuffer = new int[0];
+        }
+    }
+
+
+    // --
+    // Access
+    // --
+
+    public int size() {
+        return count;
+    }
+
+    @NotNull public MarkdownSymbol.Type getType(int index) {
+        return SYMBOL_TYPES[types[index]];
+    }
+
+    public int getLine(int index) {
+        return lines[index];
+    }
+
+    public int getStartPosition(int index) {
+        return startPositions[index];
+    }
+
+    public int getEndPosition(int index) {
+        return endPositions[index];
+    }
+
+    public int getLinePosition(int index) {
+        return linePositions[index];
+    }
+
+    public int countSymbols(@NotNull MarkdownSymbol.Type type) {
+        int ordinal = type.ordinal();
+        int result = 0;
+        for (int i = 0; i < count; i++) {
+            if (types[i] == ordinal) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    @NotNull public MarkdownSymbol getSymbol(int index) {
+        return new MarkdownSymbol(getType(index), lines[index], startPositions[index], endPositions[index], linePositions[index]);
     }
 
 
@@ -41,39 +199,72 @@ public class SimpleMarkdownSymbolStorage
     // --
 
     public void cleanOverlaps() {
-        // Collect indices to remove
-        List<Integer> removeSymbols = new ArrayList<>();
-
-        // Unordered list items override text style
-        for (int index = 0; index < symbols.size(); index++) {
-            if (symbols.get(index).type == MarkdownSymbol.Type.FirstTextStyle && symbols.get(index).endPosition - symbols.get(index).startPosition == 1) {
-                int startIndex = index + 1;
-                for (int checkIndex = index - 1; checkIndex >= 0; checkIndex--) {
-                    if (symbols.get(checkIndex).startPosition == symbols.get(index).startPosition) {
-                        startIndex = checkIndex;
-                    } else {
-                        break;
-                    }
-                }
-                for (int checkIndex = startIndex; checkIndex < symbols.size(); checkIndex++) {
-                    if (checkIndex != index) {
-                        if (symbols.get(checkIndex).startPosition == symbols.get(index).startPosition) {
-                            if (symbols.get(checkIndex).type == MarkdownSymbol.Type.UnorderedListItem){
-                                removeSymbols.add(index);
-                                break;
-                            }
-                        } else {
-                            break;
-                        }
+        // Unordered list items override single character text style symbols at the same position, symbols are compacted in place
+        int firstTextStyle = MarkdownSymbol.Type.FirstTextStyle.ordinal();
+        int unorderedListItem = MarkdownSymbol.Type.UnorderedListItem.ordinal();
+        int writeIndex = 0;
+        int groupStart = 0;
+        while (groupStart < count) {
+            // Find symbols sharing the same start position, check for a list item
+            int groupEnd = groupStart + 1;
+            boolean hasListItem = types[groupStart] == unorderedListItem;
+            while (groupEnd < count && startPositions[groupEnd] == startPositions[groupStart]) {
+                hasListItem |= types[groupEnd] == unorderedListItem;
+                groupEnd++;
+            }
+
+            // Keep symbols which are not overruled
+            for (int index = groupStart; index < groupEnd; index++) {
+                if (!hasListItem || types[index] != firstTextStyle || endPositions[index] - startPositions[index] != 1) {
+                    if (writeIndex != index) {
+                        types[writeIndex] = types[index];
+                        lines[writeIndex] = lines[index];
+                        startPositions[writeIndex] = startPositions[index];
+                        endPositions[writeIndex] = endPositions[index];
+                        linePositions[writeIndex] = linePositions[index];
                     }
+                    writeIndex++;
                 }
             }
+            groupStart = groupEnd;
+        }
+        count = writeIndex;
+    }
+
+
+    // --
+    // Helpers
+    // --
+
+    private void readColumn(IntBuffer columns, int offset, int[] field, int length) {
+        columns.position(offset);
+        columns.get(field, 0, length);
+    }
+
+    private void reorder(int[] field) {
+        for (int i = 0; i < count; i++) {
+            sortBuffer[i] = field[(int)sortKeys[i]];
+        }
+        System.arraycopy(sortBuffer, 0, field, 0, count);
+    }
+
+
+    // --
+    // Read-only list view for compatibility, symbol objects are created when accessed
+    // --
+
+    private class SymbolListView extends AbstractList<MarkdownSymbol> {
+        @Override
+        public MarkdownSymbol get(int index) {
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + count);
+            }
+            return getSymbol(index);
         }
 
-        // Remove symbols
-        for (int i = removeSymbols.size() - 1; i >= 0 ; i--) {
-            int removeIndex = removeSymbols.get(i);
-            symbols.remove(removeIndex);
+        @Override
+        public int size() {
+            return count;
         }
     }
 }
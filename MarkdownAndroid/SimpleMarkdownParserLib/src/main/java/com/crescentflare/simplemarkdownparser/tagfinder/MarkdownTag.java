@@ -1,5 +1,6 @@
 package com.crescentflare.simplemarkdownparser.tagfinder;
 
+import com.crescentflare.simplemarkdownparser.symbolfinder.MarkdownEscapeIndex;
 import com.crescentflare.simplemarkdownparser.symbolfinder.MarkdownSymbol;
 
 import org.jetbrains.annotations.NotNull;
@@ -11,6 +12,7 @@ import java.util.List;
 /**
  * Simple markdown parser library: tag
  * A markdown paragraph, heading or styling tag found within the markdown text
+ * Escapes of tags from the tag finder are a range of an index shared by the document, the escape symbol list is filled by findTags or on request
  */
 public class MarkdownTag implements Comparable<MarkdownTag> {
 
@@ -58,6 +60,9 @@ public class MarkdownTag implements Comparable<MarkdownTag> {
     public int endExtra;
     public int weight;
     public List<MarkdownSymbol> escapeSymbols;
+    private MarkdownEscapeIndex escapeIndex;
+    private int firstEscapeIndex;
+    private int endEscapeIndex;
 
 
     // --
@@ -97,6 +102,49 @@ public class MarkdownTag implements Comparable<MarkdownTag> {
     }
 
 
+    // --
+    // Escapes
+    // --
+
+    void attachEscapeIndex(@NotNull MarkdownEscapeIndex escapeIndex, int firstEscapeIndex, int endEscapeIndex) {
+        // Tags from the tag finder use a range of the index shared by the document, the escape symbol list is only filled on request
+        this.escapeIndex = escapeIndex;
+        this.firstEscapeIndex = firstEscapeIndex;
+        this.endEscapeIndex = endEscapeIndex;
+    }
+
+    public void populateEscapeSymbols() {
+        // Copy the escapes within the range of the shared index into the escape symbol list
+        if (escapeIndex != null) {
+            escapeSymbols = new ArrayList<>(escapeIndex.symbolsInIndexRange(firstEscapeIndex, endEscapeIndex));
+        }
+    }
+
+    public void setEscapeSymbols(@NotNull List<MarkdownSymbol> escapeSymbols) {
+        // Replaces the escapes of the tag, the shared index is no longer used for it
+        this.escapeSymbols = escapeSymbols;
+        escapeIndex = null;
+    }
+
+    @Nullable public MarkdownEscapeIndex getSharedEscapeIndex() {
+        return escapeIndex;
+    }
+
+    @NotNull public MarkdownEscapeIndex getEscapeIndex() {
+        // Tags without a shared index (like tags created manually) use their escape symbol list instead
+        return escapeIndex != null ? escapeIndex : MarkdownEscapeIndex.fromSymbols(escapeSymbols);
+    }
+
+    public int getFirstEscapeIndex(@NotNull MarkdownEscapeIndex escapeIndex) {
+        // The range of escapes within the tag, for the index returned by getEscapeIndex
+        return escapeIndex == this.escapeIndex ? firstEscapeIndex : escapeIndex.findFirstIndex(startPosition);
+    }
+
+    public int getEndEscapeIndex(@NotNull MarkdownEscapeIndex escapeIndex) {
+        return escapeIndex == this.escapeIndex ? endEscapeIndex : escapeIndex.findFirstIndex(endPosition);
+    }
+
+
     // --
     // Comparable implementation
     // --
@@ -0,0 +1,360 @@
+package com.crescentflare.simplemarkdownparser.tagfinder;
+
+import com.crescentflare.simplemarkdownparser.symbolfinder.MarkdownEscapeIndex;
+import com.crescentflare.simplemarkdownparser.symbolfinder.MarkdownSymbol;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Simple markdown parser library: tag table
+ * Stores markdown tags in growable arrays (one for each field) instead of tag objects, types are stored as bytes
+ * Escapes are stored as an index range within an escape index shared by all tags, use the indexed getters to read tags without creating objects
+ */
+public class MarkdownTagTable {
+
+    // --
+    // Constants
+    // --
+
+    private static final MarkdownTag.Type[] TAG_TYPES = MarkdownTag.Type.values();
+    private static final int INITIAL_CAPACITY = 64;
+
+
+    // --
+    // Members
+    // --
+
+    @NotNull public final List<MarkdownTag> tags = new TagListView();
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private int[] weights = new int[INITIAL_CAPACITY];
+    private int[] startPositions = new int[INITIAL_CAPACITY];
+    private int[] endPositions = new int[INITIAL_CAPACITY];
+    private int[] startTexts = new int[INITIAL_CAPACITY];
+    private int[] endTexts = new int[INITIAL_CAPACITY];
+    private int[] startExtras = new int[INITIAL_CAPACITY];
+    private int[] endExtras = new int[INITIAL_CAPACITY];
+    private int[] firstEscapeIndices = new int[INITIAL_CAPACITY];
+    private int[] endEscapeIndices = new int[INITIAL_CAPACITY];
+    private int count = 0;
+    private MarkdownEscapeIndex escapeIndex;
+    private int[] sortOrder = new int[0];
+    private int[] sortBuffer = new int[0];
+
+
+    // --
+    // Initialization
+    // --
+
+    @NotNull public static MarkdownTagTable fromTags(@NotNull List<MarkdownTag> tags) {
+        // Use the escape index shared by the tags, or create one from the escapes of the section tags when they don't share one
+        // Escapes are only removed within sections, the escapes of other tags aren't used by the processors
+        MarkdownEscapeIndex sharedEscapeIndex = null;
+        boolean missingEscapeIndex = false;
+        for (MarkdownTag tag : tags) {
+            MarkdownEscapeIndex tagEscapeIndex = tag.getSharedEscapeIndex();
+            if (tagEscapeIndex == null || (sharedEscapeIndex != null && sharedEscapeIndex != tagEscapeIndex)) {
+                missingEscapeIndex = true;
+                break;
+            }
+            sharedEscapeIndex = tagEscapeIndex;
+        }
+        if (missingEscapeIndex) {
+            ArrayList<MarkdownSymbol> escapeSymbols = new ArrayList<>();
+            for (MarkdownTag tag : tags) {
+                if (tag.type.isSection()) {
+                    MarkdownEscapeIndex tagEscapeIndex = tag.getEscapeIndex();
+                    escapeSymbols.addAll(tagEscapeIndex.symbolsInIndexRange(tag.getFirstEscapeIndex(tagEscapeIndex), tag.getEndEscapeIndex(tagEscapeIndex)));
+                }
+            }
+            sharedEscapeIndex = MarkdownEscapeIndex.fromSymbols(escapeSymbols);
+        }
+
+        // Add tags and sort them
+        MarkdownTagTable result = new MarkdownTagTable();
+        result.ensureCapacity(tags.size());
+        result.setEscapeIndex(sharedEscapeIndex);
+        for (MarkdownTag tag : tags) {
+            result.addTag(tag.type, tag.weight, tag.startPosition, tag.endPosition, tag.startText, tag.endText, tag.startExtra, tag.endExtra);
+        }
+        result.sort();
+        return result;
+    }
+
+
+    // --
+    // Storage
+    // --
+
+    public void addTag(@NotNull MarkdownTag tag) {
+        if (escapeIndex == null && tag.getSharedEscapeIndex() != null) {
+            setEscapeIndex(tag.getSharedEscapeIndex());
+        }
+        addTag(tag.type, tag.weight, tag.startPosition, tag.endPosition, tag.startText, tag.endText, tag.startExtra, tag.endExtra);
+    }
+
+    public void addTag(@NotNull MarkdownTag.Type type, int weight, int startPosition, int endPosition, int startText, int endText, int startExtra, int endExtra) {
+        if (count == types.length) {
+            ensureCapacity(count + 1);
+        }
+        types[count] = (byte)type.ordinal();
+        weights[count] = weight;
+        startPositions[count] = startPosition;
+        endPositions[count] = endPosition;
+        startTexts[count] = startText;
+        endTexts[count] = endText;
+        startExtras[count] = startExtra;
+        endExtras[count] = endExtra;
+        updateEscapeRange(count);
+        count++;
+    }
+
+    public void setEscapeIndex(@Nullable MarkdownEscapeIndex escapeIndex) {
+        this.escapeIndex = escapeIndex;
+        for (int i = 0; i < count; i++) {
+            updateEscapeRange(i);
+        }
+    }
+
+    public void clearTags() {
+        count = 0;
+        escapeIndex = null;
+    }
+
+    public void sort() {
+        // Return early if already sorted
+        boolean sorted = true;
+        for (int i = 1; i < count; i++) {
+            if (compareTags(i - 1, i) > 0) {
+                sorted = false;
+                break;
+            }
+        }
+        if (sorted) {
+            return;
+        }
+
+        // Stable sort on position and type (the same order as sorting tag objects), then reorder all fields
+        if (sortOrder.length < count) {
+            sortOrder = new int[types.length];
+            sortBuffer = new int[types.length];
+        }
+        for (int i = 0; i < count; i++) {
+            sortOrder[i] = i;
+        }
+        mergeSort();
+        byte[] sortedTypes = new byte[types.length];
+        for (int i = 0; i < count; i++) {
+            sortedTypes[i] = types[sortOrder[i]];
+        }
+        types = sortedTypes;
+        reorder(weights);
+        reorder(startPositions);
+        reorder(endPositions);
+        reorder(startTexts);
+        reorder(endTexts);
+        reorder(startExtras);
+        reorder(endExtras);
+        reorder(firstEscapeIndices);
+        reorder(endEscapeIndices);
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > types.length) {
+            int newCapacity = Math.max(capacity, types.length * 2);
+            types = Arrays.copyOf(types, newCapacity);
+            weights = Arrays.copyOf(weights, newCapacity);
+            startPositions = Arrays.copyOf(startPositions, newCapacity);
+            endPositions = Arrays.copyOf(endPositions, newCapacity);
+            startTexts = Arrays.copyOf(startTexts, newCapacity);
+            endTexts = Arrays.copyOf(endTexts, newCapacity);
+            startExtras = Arrays.copyOf(startExtras, newCapacity);
+            endExtras = Arrays.copyOf(endExtras, newCapacity);
+            firstEscapeIndices = Arrays.copyOf(firstEscapeIndices, newCapacity);
+            endEscapeIndices = Arrays.copyOf(endEscapeIndices, newCapacity);
+        }
+    }
+
+    public void trimCapacity(int maxCapacity) {
+        // Shrink arrays grown beyond the given capacity (keeping the tags), sort buffers are dropped and allocated again when needed
+        if (types.length > maxCapacity && types.length > INITIAL_CAPACITY) {
+            int newCapacity = Math.max(count, INITIAL_CAPACITY);
+            types = Arrays.copyOf(types, newCapacity);
+            weights = Arrays.copyOf(weights, newCapacity);
+            startPositions = Arrays.copyOf(startPositions, newCapacity);
+            endPositions = Arrays.copyOf(endPositions, newCapacity);
+            startTexts = Arrays.copyOf(startTexts, newCapacity);
+            endTexts = Arrays.copyOf(endTexts, newCapacity);
+            startExtras = Arrays.copyOf(startExtras, newCapacity);
+            endExtras = Arrays.copyOf(endExtras, newCapacity);
+            firstEscapeIndices = Arrays.copyOf(firstEscapeIndices, newCapacity);
+            endEscapeIndices = Arrays.copyOf(endEscapeIndices, newCapacity);
+        }
+        if (sortOrder.length > maxCapacity) {
+            sortOrder = new int[0];
+            sortBuffer = new int[0];
+        }
+    }
+
+    public int getCapacity() {
+        return types.length;
+    }
+
+
+    // --
+    // Access
+    // --
+
+    public int size() {
+        return count;
+    }
+
+    @NotNull public MarkdownTag.Type getType(int index) {
+        return TAG_TYPES[types[index]];
+    }
+
+    public int getWeight(int index) {
+        return weights[index];
+    }
+
+    public int getStartPosition(int index) {
+        return startPositions[index];
+    }
+
+    public int getEndPosition(int index) {
+        return endPositions[index];
+    }
+
+    public int getStartText(int index) {
+        return startTexts[index];
+    }
+
+    public int getEndText(int index) {
+        return endTexts[index];
+    }
+
+    public int getStartExtra(int index) {
+        return startExtras[index];
+    }
+
+    public int getEndExtra(int index) {
+        return endExtras[index];
+    }
+
+    public int getFirstEscapeIndex(int index) {
+        return firstEscapeIndices[index];
+    }
+
+    public int getEndEscapeIndex(int index) {
+        return endEscapeIndices[index];
+    }
+
+    @Nullable public MarkdownEscapeIndex getEscapeIndex() {
+        return escapeIndex;
+    }
+
+    public int findFirstIndex(int position) {
+        // Binary search for the first tag starting at or after the given position, the table should be sorted
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (startPositions[middle] < position) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    @NotNull public MarkdownTag getTag(int index) {
+        // The escape symbol list of the tag stays empty until it's populated, the escapes are a range of the shared index
+        MarkdownTag tag = new MarkdownTag(getType(index), weights[index], startPositions[index], endPositions[index], startTexts[index], endTexts[index], startExtras[index], endExtras[index]);
+        if (escapeIndex != null) {
+            tag.attachEscapeIndex(escapeIndex, firstEscapeIndices[index], endEscapeIndices[index]);
+        }
+        return tag;
+    }
+
+
+    // --
+    // Helpers
+    // --
+
+    private void updateEscapeRange(int index) {
+        if (escapeIndex != null) {
+            firstEscapeIndices[index] = escapeIndex.findFirstIndex(startPositions[index]);
+            endEscapeIndices[index] = escapeIndex.findFirstIndex(endPositions[index]);
+        } else {
+            firstEscapeIndices[index] = 0;
+            endEscapeIndices[index] = 0;
+        }
+    }
+
+    private int compareTags(int index, int otherIndex) {
+        if (startPositions[index] == startPositions[otherIndex]) {
+            return types[index] - types[otherIndex];
+        }
+        return startPositions[index] < startPositions[otherIndex] ? -1 : 1;
+    }
+
+    private void mergeSort() {
+        // Merge runs of increasing size from the bottom up, taking from the left run when equal keeps the sort stable
+        int[] source = sortOrder;
+        int[] target = sortBuffer;
+        for (int width = 1; width < count; width *= 2) {
+            for (int left = 0; left < count; left += width * 2) {
+                int middle = Math.min(left + width, count);
+                int right = Math.min(left + width * 2, count);
+                int leftIndex = left;
+                int rightIndex = middle;
+                for (int i = left; i < right; i++) {
+                    if (leftIndex < middle && (rightIndex >= right || compareTags(source[leftIndex], source[rightIndex]) <= 0)) {
+                        target[i] = source[leftIndex++];
+                    } else {
+                        target[i] = source[rightIndex++];
+                    }
+                }
+            }
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        if (source != sortOrder) {
+            System.arraycopy(source, 0, sortOrder, 0, count);
+        }
+    }
+
+    private void reorder(int[] field) {
+        for (int i = 0; i < count; i++) {
+            sortBuffer[i] = field[sortOrder[i]];
+        }
+        System.arraycopy(sortBuffer, 0, field, 0, count);
+    }
+
+
+    // --
+    // Read-only list view, tag objects are created when accessed
+    // --
+
+    private class TagListView extends AbstractList<MarkdownTag> {
+        @Override
+        public MarkdownTag get(int index) {
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + count);
+            }
+            return getTag(index);
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.crescentflare.simplemarkdownparser.tagfinder;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Simple markdown parser library: tag visitor
+ * Receives tags from the tag finder section by section in document order, while the document is being parsed
+ * Tags within a section are visited in the same order as the sorted result of findTags, lines before the first section are visited without a section
+ * The escape symbol lists of visited tags are empty, use getEscapeIndex or populateEscapeSymbols of the tag to get its escapes
+ */
+public interface MarkdownTagVisitor {
+
+    void enterSection(@NotNull MarkdownTag sectionTag);
+
+    void visitLine(@NotNull MarkdownTag lineTag);
+
+    void visitTextStyle(@NotNull MarkdownTag textStyleTag);
+
+    void visitLink(@NotNull MarkdownTag linkTag);
+
+    void visitListItem(@NotNull MarkdownTag listItemTag);
+
+    void exitSection(@NotNull MarkdownTag sectionTag);
+}
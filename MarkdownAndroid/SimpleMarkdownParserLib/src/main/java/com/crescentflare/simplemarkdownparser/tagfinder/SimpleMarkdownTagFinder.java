@@ -1,44 +1,106 @@
 package com.crescentflare.simplemarkdownparser.tagfinder;
 
+import com.crescentflare.simplemarkdownparser.symbolfinder.MarkdownEscapeIndex;
 import com.crescentflare.simplemarkdownparser.symbolfinder.MarkdownSymbol;
+import com.crescentflare.simplemarkdownparser.symbolfinder.SimpleMarkdownSymbolStorage;
 
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Simple markdown parser library: tag finder class
  * Combine markdown symbols into tags
+ * Symbols are indexed by line first, this is used to look up symbols at the start of a line without scanning from the beginning
  */
 public class SimpleMarkdownTagFinder {
 
+    // --
+    // Members
+    // --
+
+    private int[] textStyleSymbolIndices = new int[0];
+    private int[] nextTextStyleSymbolIndices = new int[0];
+    private int[] lineStartIndices = new int[0];
+    private final ArrayList<MarkdownTag> sectionTags = new ArrayList<>();
+    private int maxSectionTagCount = 0;
+
+
     // --
     // High level parsing
     // --
 
     @NotNull public List<MarkdownTag> findTags(@NotNull String text, @NotNull List<MarkdownSymbol> symbols) {
-        // Find first section tag
-        ArrayList<MarkdownTag> result = new ArrayList<>();
-        int sectionIndex = findNextSectionBlockIndex(symbols);
-        int startSymbolIndex = 0;
-        for (int index = 0; index < symbols.size(); index++) {
-            if (symbols.get(index).startPosition >= symbols.get(sectionIndex).startPosition) {
-                startSymbolIndex = index;
-                break;
-            }
+        SimpleMarkdownSymbolStorage symbolStorage = new SimpleMarkdownSymbolStorage();
+        symbolStorage.ensureCapacity(symbols.size());
+        for (MarkdownSymbol symbol : symbols) {
+            symbolStorage.addSymbol(symbol);
         }
+        return findTags(text, symbolStorage);
+    }
+
+    @NotNull public List<MarkdownTag> findTags(@NotNull String text, @NotNull SimpleMarkdownSymbolStorage symbols) {
+        return findTags(text, symbols, EnumSet.allOf(MarkdownTag.Type.class));
+    }
+
+    @NotNull public List<MarkdownTag> findTags(@NotNull String text, @NotNull SimpleMarkdownSymbolStorage symbols, @NotNull Set<MarkdownTag.Type> tagTypes) {
+        // Collect the visited tags and sort them, tags of sections are already sorted which makes this cheap
+        TagListCollector collector = new TagListCollector(tagTypes);
+        visitTags(text, symbols, tagTypes, collector);
+        Collections.sort(collector.result);
+        return collector.result;
+    }
+
+    @NotNull public MarkdownTagTable findTagTable(@NotNull String text, @NotNull SimpleMarkdownSymbolStorage symbols) {
+        MarkdownTagTable result = new MarkdownTagTable();
+        findTagTable(text, symbols, result);
+        return result;
+    }
+
+    public void findTagTable(@NotNull String text, @NotNull SimpleMarkdownSymbolStorage symbols, @NotNull MarkdownTagTable result) {
+        // Store the visited tags in the table, tag objects are only kept for the section being visited
+        Set<MarkdownTag.Type> tagTypes = EnumSet.allOf(MarkdownTag.Type.class);
+        result.clearTags();
+        visitTags(text, symbols, tagTypes, new TagTableCollector(tagTypes, result));
+        result.sort();
+    }
+
+
+    // --
+    // Streaming tags to a visitor
+    // --
+
+    public void visitTags(@NotNull String text, @NotNull SimpleMarkdownSymbolStorage symbols, @NotNull MarkdownTagVisitor visitor) {
+        visitTags(text, symbols, EnumSet.allOf(MarkdownTag.Type.class), visitor);
+    }
 
-        // Add lines that could come before it
-        if (startSymbolIndex > 0) {
-            List<MarkdownSymbol> scanSymbols = symbols.subList(0, startSymbolIndex);
+    public void visitTags(@NotNull String text, @NotNull SimpleMarkdownSymbolStorage symbols, @NotNull Set<MarkdownTag.Type> tagTypes, @NotNull MarkdownTagVisitor visitor) {
+        // Determine which passes are needed, sections are always entered because other tags depend on them
+        boolean includeLines = tagTypes.contains(MarkdownTag.Type.Line);
+        boolean includeTextStyles = tagTypes.contains(MarkdownTag.Type.TextStyle) || tagTypes.contains(MarkdownTag.Type.AlternativeTextStyle);
+        boolean includeLinks = tagTypes.contains(MarkdownTag.Type.Link);
+        boolean includeLists = tagTypes.contains(MarkdownTag.Type.OrderedListItem) || tagTypes.contains(MarkdownTag.Type.UnorderedListItem);
+
+        // Find first section tag, an index of escape symbols is shared with all tags
+        MarkdownEscapeIndex escapeIndex = MarkdownEscapeIndex.fromSymbols(symbols);
+        indexLines(symbols);
+        int sectionIndex = findNextSectionBlockIndex(symbols);
+        int startSymbolIndex = sectionIndex >= 0 ? findFirstSymbolIndex(symbols, symbols.getStartPosition(sectionIndex)) : symbols.size();
+
+        // Visit lines that could come before it
+        if (startSymbolIndex > 0 && includeLines) {
             MarkdownTag dummyParagraphTag = new MarkdownTag(
                 MarkdownTag.Type.Paragraph, 0,
-                symbols.get(0).startPosition,
-                symbols.get(startSymbolIndex).startPosition - symbols.get(startSymbolIndex).linePosition
+                symbols.getStartPosition(0),
+                startSymbolIndex < symbols.size() ? symbols.getStartPosition(startSymbolIndex) - symbols.getLinePosition(startSymbolIndex) : text.length()
             );
-            result.addAll(findLineTags(text, scanSymbols, dummyParagraphTag));
+            sectionTags.addAll(findLineTags(text, symbols, 0, startSymbolIndex, dummyParagraphTag));
+            visitSectionTags(visitor, tagTypes, escapeIndex);
         }
 
         // Start finding inner tags
@@ -46,20 +108,20 @@ public class SimpleMarkdownTagFinder {
             // Set up section tag
             int nextSectionIndex = findNextSectionBlockIndex(symbols, sectionIndex);
             MarkdownTag sectionTag = makeSectionTag(text, symbols, sectionIndex, nextSectionIndex);
-            result.add(sectionTag);
 
-            // Determine symbols found within the section tag
+            // Determine symbols found within the section tag, symbols starting at the end of the section or later can't be inside
             int endSymbolIndex = startSymbolIndex;
-            for (int index = startSymbolIndex; index < symbols.size(); index++) {
-                if (symbols.get(index).startPosition >= sectionTag.startPosition && symbols.get(index).endPosition <= sectionTag.endPosition) {
+            for (int index = startSymbolIndex; index < symbols.size() && symbols.getStartPosition(index) < sectionTag.endPosition; index++) {
+                if (symbols.getStartPosition(index) >= sectionTag.startPosition && symbols.getEndPosition(index) <= sectionTag.endPosition) {
                     endSymbolIndex = index + 1;
                 }
             }
 
             // Find line tags and shorten the section if empty lines are at the end
-            List<MarkdownSymbol> scanSymbols = symbols.subList(startSymbolIndex, endSymbolIndex);
-            List<MarkdownTag> lineTags = findLineTags(text, scanSymbols, sectionTag);
-            result.addAll(lineTags);
+            List<MarkdownTag> lineTags = findLineTags(text, symbols, startSymbolIndex, endSymbolIndex, sectionTag);
+            if (includeLines) {
+                sectionTags.addAll(lineTags);
+            }
             for (int index = 0; index < lineTags.size(); index++) {
                 if (lineTags.get(index).startText >= lineTags.get(index).endText) {
                     if (index > 0) {
@@ -70,33 +132,77 @@ public class SimpleMarkdownTagFinder {
             }
 
             // Add other tags within the section
-            result.addAll(findTextStyleTags(scanSymbols));
-            result.addAll(findLinkTags(text, scanSymbols));
-            result.addAll(findListTags(text, scanSymbols, sectionTag));
+            if (includeTextStyles) {
+                sectionTags.addAll(findTextStyleTags(symbols, startSymbolIndex, endSymbolIndex));
+            }
+            if (includeLinks) {
+                sectionTags.addAll(findLinkTags(text, symbols, startSymbolIndex, endSymbolIndex));
+            }
+            if (includeLists) {
+                sectionTags.addAll(findListTags(text, symbols, startSymbolIndex, endSymbolIndex, sectionTag));
+            }
+
+            // Visit the section and its tags
+            attachEscapeSymbols(sectionTag, escapeIndex);
+            visitor.enterSection(sectionTag);
+            visitSectionTags(visitor, tagTypes, escapeIndex);
+            visitor.exitSection(sectionTag);
 
             // Prepare for the next iteration
             startSymbolIndex = endSymbolIndex;
             sectionIndex = nextSectionIndex;
         }
+    }
 
-        // Add escape symbols to tags
-        ArrayList<MarkdownSymbol> escapeSymbols = new ArrayList<>();
-        for (MarkdownSymbol symbol : symbols) {
-            if (symbol.type == MarkdownSymbol.Type.Escape) {
-                escapeSymbols.add(symbol);
-            }
-        }
-        for (MarkdownTag tag : result) {
-            for (MarkdownSymbol escapeSymbol : escapeSymbols) {
-                if (escapeSymbol.startPosition >= tag.startPosition && escapeSymbol.startPosition < tag.endPosition) {
-                    tag.escapeSymbols.add(escapeSymbol);
+    private void visitSectionTags(MarkdownTagVisitor visitor, Set<MarkdownTag.Type> tagTypes, MarkdownEscapeIndex escapeIndex) {
+        // Sort the tags of a single section and send them to the visitor, skip tag types which weren't requested (some passes find more than one type)
+        Collections.sort(sectionTags);
+        maxSectionTagCount = Math.max(maxSectionTagCount, sectionTags.size());
+        for (MarkdownTag tag : sectionTags) {
+            if (tagTypes.contains(tag.type)) {
+                attachEscapeSymbols(tag, escapeIndex);
+                switch (tag.type) {
+                    case Line:
+                        visitor.visitLine(tag);
+                        break;
+                    case TextStyle:
+                    case AlternativeTextStyle:
+                        visitor.visitTextStyle(tag);
+                        break;
+                    case Link:
+                        visitor.visitLink(tag);
+                        break;
+                    case OrderedListItem:
+                    case UnorderedListItem:
+                        visitor.visitListItem(tag);
+                        break;
                 }
             }
         }
+        sectionTags.clear();
+    }
 
-        // Sort and return result
-        Collections.sort(result);
-        return result;
+    private static void attachEscapeSymbols(MarkdownTag tag, MarkdownEscapeIndex escapeIndex) {
+        tag.attachEscapeIndex(escapeIndex, escapeIndex.findFirstIndex(tag.startPosition), escapeIndex.findFirstIndex(tag.endPosition));
+    }
+
+
+    // --
+    // Section boundaries
+    // --
+
+    @NotNull public int[] findSectionPositions(@NotNull SimpleMarkdownSymbolStorage symbols) {
+        // Return the start of the line of each section, a text split at these positions gives the same sections for each part
+        int[] result = new int[16];
+        int count = 0;
+        indexLines(symbols);
+        for (int sectionIndex = findNextSectionBlockIndex(symbols); sectionIndex >= 0; sectionIndex = findNextSectionBlockIndex(symbols, sectionIndex)) {
+            if (count == result.length) {
+                result = Arrays.copyOf(result, count * 2);
+            }
+            result[count++] = symbols.getStartPosition(sectionIndex) - symbols.getLinePosition(sectionIndex);
+        }
+        return Arrays.copyOf(result, count);
     }
 
 
@@ -104,28 +210,28 @@ public class SimpleMarkdownTagFinder {
     // Check sections
     // --
 
-    private MarkdownTag makeSectionTag(String text, List<MarkdownSymbol> symbols, int fromIndex, int toIndex) {
+    private MarkdownTag makeSectionTag(String text, SimpleMarkdownSymbolStorage symbols, int fromIndex, int toIndex) {
         return makeSectionTag(text, symbols, fromIndex, toIndex, false);
     }
 
-    private MarkdownTag makeSectionTag(String text, List<MarkdownSymbol> symbols, int fromIndex, int toIndex, boolean firstItem) {
+    private MarkdownTag makeSectionTag(String text, SimpleMarkdownSymbolStorage symbols, int fromIndex, int toIndex, boolean firstItem) {
         // Set position range
-        int startPosition = firstItem ? 0 : symbols.get(fromIndex).startPosition - symbols.get(fromIndex).linePosition;
-        int endPosition = toIndex >= 0 ? symbols.get(toIndex).startPosition - symbols.get(toIndex).linePosition : text.length();
-        int startTextPosition = symbols.get(fromIndex).startPosition;
-        int endTextPosition = symbols.get(fromIndex).endPosition;
+        int startPosition = firstItem ? 0 : symbols.getStartPosition(fromIndex) - symbols.getLinePosition(fromIndex);
+        int endPosition = toIndex >= 0 ? symbols.getStartPosition(toIndex) - symbols.getLinePosition(toIndex) : text.length();
+        int startTextPosition = symbols.getStartPosition(fromIndex);
+        int endTextPosition = symbols.getEndPosition(fromIndex);
         if (toIndex > fromIndex || toIndex < 0) {
             int endIndex = toIndex < 0 ? symbols.size() : toIndex;
             for (int index = fromIndex; index < endIndex; index++) {
-                if (symbols.get(index).type == MarkdownSymbol.Type.TextBlock) {
-                    endTextPosition = symbols.get(index).endPosition;
+                if (symbols.getType(index) == MarkdownSymbol.Type.TextBlock) {
+                    endTextPosition = symbols.getEndPosition(index);
                 }
             }
         }
 
         // Create tag
         MarkdownTag tag = new MarkdownTag(
-            getSectionType(symbols, symbols.get(fromIndex)),
+            getSectionType(symbols, fromIndex),
             0,
             startPosition,
             endPosition,
@@ -136,16 +242,16 @@ public class SimpleMarkdownTagFinder {
         // For headers, exclude header characters from text and determine weight, then trim for good measure
         if (tag.type == MarkdownTag.Type.Header) {
             boolean firstHeader = true;
-            for (MarkdownSymbol symbol : symbols) {
-                if (symbol.startPosition >= tag.startPosition) {
-                    if (symbol.endPosition <= tag.endPosition) {
-                        if (symbol.type == MarkdownSymbol.Type.Header) {
+            for (int index = findFirstSymbolIndex(symbols, tag.startPosition); index < symbols.size(); index++) {
+                if (symbols.getStartPosition(index) >= tag.startPosition) {
+                    if (symbols.getEndPosition(index) <= tag.endPosition) {
+                        if (symbols.getType(index) == MarkdownSymbol.Type.Header) {
                             if (firstHeader) {
-                                tag.startText = symbol.endPosition;
-                                tag.weight = symbol.endPosition - symbol.startPosition;
+                                tag.startText = symbols.getEndPosition(index);
+                                tag.weight = symbols.getEndPosition(index) - symbols.getStartPosition(index);
                                 firstHeader = false;
                             } else {
-                                tag.endText = symbol.startPosition;
+                                tag.endText = symbols.getStartPosition(index);
                                 break;
                             }
                         }
@@ -161,21 +267,22 @@ public class SimpleMarkdownTagFinder {
         return tag;
     }
 
-    private int findNextSectionBlockIndex(List<MarkdownSymbol> symbols) {
+    private int findNextSectionBlockIndex(SimpleMarkdownSymbolStorage symbols) {
         return findNextSectionBlockIndex(symbols, -1);
     }
 
-    private int findNextSectionBlockIndex(List<MarkdownSymbol> symbols, int afterSectionIndex) {
-        MarkdownTag.Type afterSectionType = afterSectionIndex >= 0 ? getSectionType(symbols, symbols.get(afterSectionIndex)) : MarkdownTag.Type.Paragraph;
+    private int findNextSectionBlockIndex(SimpleMarkdownSymbolStorage symbols, int afterSectionIndex) {
+        MarkdownTag.Type afterSectionType = afterSectionIndex >= 0 ? getSectionType(symbols, afterSectionIndex) : MarkdownTag.Type.Paragraph;
         int consecutiveNewlines = 0;
-        int previousListLinePosition = afterSectionIndex >= 0 ? symbols.get(afterSectionIndex).linePosition : 0;
+        int previousListLinePosition = afterSectionIndex >= 0 ? symbols.getLinePosition(afterSectionIndex) : 0;
         for (int index = afterSectionIndex + 1; index < symbols.size(); index++) {
-            if (symbols.get(index).type == MarkdownSymbol.Type.Newline) {
+            MarkdownSymbol.Type type = symbols.getType(index);
+            if (type == MarkdownSymbol.Type.Newline) {
                 consecutiveNewlines += 1;
-            } else if (symbols.get(index).type == MarkdownSymbol.Type.TextBlock) {
-                MarkdownTag.Type sectionType = getSectionType(symbols, symbols.get(index));
+            } else if (type == MarkdownSymbol.Type.TextBlock) {
+                MarkdownTag.Type sectionType = getSectionType(symbols, index);
                 boolean canAbortEarly = sectionType == MarkdownTag.Type.Header || afterSectionType == MarkdownTag.Type.Header || sectionType != afterSectionType;
-                if (afterSectionType == MarkdownTag.Type.List && sectionType == MarkdownTag.Type.Paragraph && symbols.get(index).linePosition >= previousListLinePosition) {
+                if (afterSectionType == MarkdownTag.Type.List && sectionType == MarkdownTag.Type.Paragraph && symbols.getLinePosition(index) >= previousListLinePosition) {
                     canAbortEarly = false;
                 }
                 if (consecutiveNewlines > 1 || afterSectionIndex < 0 || (consecutiveNewlines > 0 && canAbortEarly)) {
@@ -183,19 +290,20 @@ public class SimpleMarkdownTagFinder {
                 } else {
                     consecutiveNewlines = 0;
                 }
-            } else if (symbols.get(index).type == MarkdownSymbol.Type.OrderedListItem || symbols.get(index).type == MarkdownSymbol.Type.UnorderedListItem) {
-                previousListLinePosition = symbols.get(index).linePosition + symbols.get(index).endPosition - symbols.get(index).startPosition + 1;
+            } else if (type == MarkdownSymbol.Type.OrderedListItem || type == MarkdownSymbol.Type.UnorderedListItem) {
+                previousListLinePosition = symbols.getLinePosition(index) + symbols.getEndPosition(index) - symbols.getStartPosition(index) + 1;
             }
         }
         return -1;
     }
 
-    private MarkdownTag.Type getSectionType(List<MarkdownSymbol> symbols, MarkdownSymbol nearSymbol) {
-        int checkLine = nearSymbol.line;
-        int checkLinePosition = nearSymbol.linePosition;
-        for (MarkdownSymbol symbol : symbols) {
-            if (symbol.line == checkLine && symbol.linePosition == checkLinePosition) {
-                switch (symbol.type) {
+    private MarkdownTag.Type getSectionType(SimpleMarkdownSymbolStorage symbols, int nearIndex) {
+        int checkLine = symbols.getLine(nearIndex);
+        int checkLinePosition = symbols.getLinePosition(nearIndex);
+        int endIndex = lineStartIndices[checkLine + 1];
+        for (int index = lineStartIndices[checkLine]; index < endIndex; index++) {
+            if (symbols.getLinePosition(index) == checkLinePosition) {
+                switch (symbols.getType(index)) {
                     case Header:
                         return MarkdownTag.Type.Header;
                     case OrderedListItem:
@@ -204,47 +312,96 @@ public class SimpleMarkdownTagFinder {
                     default:
                         break;
                 }
-            } else if (symbol.line > checkLine) {
-                break;
             }
         }
         return MarkdownTag.Type.Paragraph;
     }
 
 
+    // --
+    // Scratch memory
+    // --
+
+    public void trimCapacity(int maxCapacity) {
+        // Drop scratch arrays and lists grown beyond the given capacity, they are allocated again when needed
+        if (textStyleSymbolIndices.length > maxCapacity) {
+            textStyleSymbolIndices = new int[0];
+            nextTextStyleSymbolIndices = new int[0];
+        }
+        if (lineStartIndices.length > maxCapacity) {
+            lineStartIndices = new int[0];
+        }
+        if (maxSectionTagCount > maxCapacity) {
+            sectionTags.trimToSize();
+            maxSectionTagCount = sectionTags.size();
+        }
+    }
+
+
+    // --
+    // Symbol indexing
+    // --
+
+    private void indexLines(SimpleMarkdownSymbolStorage symbols) {
+        // Store the index of the first symbol for each line (symbols are sorted, so lines only increase), with an extra entry for the end
+        int symbolCount = symbols.size();
+        int lineCount = symbolCount > 0 ? symbols.getLine(symbolCount - 1) + 1 : 0;
+        if (lineStartIndices.length < lineCount + 1) {
+            lineStartIndices = new int[lineCount + 1];
+        }
+        int index = 0;
+        for (int line = 0; line <= lineCount; line++) {
+            while (index < symbolCount && symbols.getLine(index) < line) {
+                index++;
+            }
+            lineStartIndices[line] = index;
+        }
+    }
+
+    private int findFirstSymbolIndex(SimpleMarkdownSymbolStorage symbols, int position) {
+        // Binary search for the first symbol starting at or after the given position
+        int low = 0;
+        int high = symbols.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (symbols.getStartPosition(middle) < position) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+
     // --
     // Check lines
     // --
 
-    private List<MarkdownTag> findLineTags(String text, List<MarkdownSymbol> symbols, MarkdownTag section) {
+    private List<MarkdownTag> findLineTags(String text, SimpleMarkdownSymbolStorage symbols, int fromIndex, int toIndex, MarkdownTag section) {
         // Search for newline symbols
         ArrayList<MarkdownTag> result = new ArrayList<>();
-        MarkdownSymbol sectionSymbol = new MarkdownSymbol(MarkdownSymbol.Type.TextBlock, 0, section.startPosition, section.endPosition, 0);
-        MarkdownSymbol startSymbol = sectionSymbol;
-        for (MarkdownSymbol symbol : symbols) {
-            if (symbol.type == MarkdownSymbol.Type.Newline) {
-                result.add(makeLineTag(text, startSymbol, symbol));
-                startSymbol = symbol;
+        int lineStartPosition = section.startPosition;
+        boolean foundNewline = false;
+        for (int index = fromIndex; index < toIndex; index++) {
+            if (symbols.getType(index) == MarkdownSymbol.Type.Newline) {
+                result.add(makeLineTag(text, lineStartPosition, symbols.getEndPosition(index), symbols.getStartPosition(index)));
+                lineStartPosition = symbols.getEndPosition(index);
+                foundNewline = true;
             }
         }
 
         // Handle remains
-        if (startSymbol.endPosition < sectionSymbol.endPosition || startSymbol == sectionSymbol) {
-            result.add(makeLineTag(text, startSymbol, sectionSymbol));
+        if (lineStartPosition < section.endPosition || !foundNewline) {
+            result.add(makeLineTag(text, lineStartPosition, section.endPosition, section.endPosition));
         }
 
         // Return result
         return result;
     }
 
-    private MarkdownTag makeLineTag(String text, MarkdownSymbol startSymbol, MarkdownSymbol endSymbol) {
-        MarkdownTag tag = new MarkdownTag(
-            MarkdownTag.Type.Line, 0,
-            startSymbol.type == MarkdownSymbol.Type.Newline ? startSymbol.endPosition : startSymbol.startPosition,
-            endSymbol.endPosition,
-            startSymbol.type == MarkdownSymbol.Type.Newline ? startSymbol.endPosition : startSymbol.startPosition,
-            endSymbol.type == MarkdownSymbol.Type.Newline ? endSymbol.startPosition : endSymbol.endPosition
-        );
+    private MarkdownTag makeLineTag(String text, int startPosition, int endPosition, int endTextPosition) {
+        MarkdownTag tag = new MarkdownTag(MarkdownTag.Type.Line, 0, startPosition, endPosition, startPosition, endTextPosition);
         trimTagSpaces(text, tag);
         return tag;
     }
@@ -254,42 +411,43 @@ public class SimpleMarkdownTagFinder {
     // Check text styles
     // --
 
-    private List<MarkdownTag> findTextStyleTags(List<MarkdownSymbol> symbols) {
-        // Find matching text style symbols in two batches (the second one is used to catch edge cases)
+    private List<MarkdownTag> findTextStyleTags(SimpleMarkdownSymbolStorage symbols, int fromIndex, int toIndex) {
+        // Pair symbols with the closest previous unpaired symbol of the same type using a stack, like matching brackets
         ArrayList<MarkdownTag> result = new ArrayList<>();
-        ArrayList<MarkdownSymbol> checkSymbols = new ArrayList<>();
-        for (MarkdownSymbol symbol : symbols) {
-            if (symbol.type.isTextStyle()) {
-                checkSymbols.add(symbol);
-            }
+        if (textStyleSymbolIndices.length < toIndex - fromIndex) {
+            textStyleSymbolIndices = new int[toIndex - fromIndex];
+            nextTextStyleSymbolIndices = new int[toIndex - fromIndex];
         }
-        int phase = 0;
-        while (phase < 2 && checkSymbols.size() > 1) {
-            for (int index = 0; index < checkSymbols.size() - 1; index++) {
-                if (phase == 0 && checkSymbols.get(index + 1).type == checkSymbols.get(index).type) {
-                    result.add(makeTextStyleTag(checkSymbols.get(index), checkSymbols.get(index + 1)));
-                    checkSymbols.remove(index + 1);
-                    checkSymbols.remove(index);
-                    break;
-                } else if (phase == 1) {
-                    int nextIndex = -1;
-                    for (int i = index + 1; i < checkSymbols.size(); i++) {
-                        if (checkSymbols.get(i).type == checkSymbols.get(index).type) {
-                            nextIndex = i;
-                            break;
-                        }
-                    }
-                    if (nextIndex > 0) {
-                        result.add(makeTextStyleTag(checkSymbols.get(index), checkSymbols.get(nextIndex)));
-                        for (int i = nextIndex; i >= index; i--) {
-                            checkSymbols.remove(i);
-                        }
-                        break;
-                    }
+        int[] stack = textStyleSymbolIndices;
+        int stackSize = 0;
+        for (int index = fromIndex; index < toIndex; index++) {
+            MarkdownSymbol.Type type = symbols.getType(index);
+            if (type.isTextStyle()) {
+                if (stackSize > 0 && symbols.getType(stack[stackSize - 1]) == type) {
+                    result.add(makeTextStyleTag(symbols, stack[stackSize - 1], index));
+                    stackSize--;
+                } else {
+                    stack[stackSize++] = index;
                 }
-                if (index == checkSymbols.size() - 2) {
-                    phase += 1;
-                    break;
+            }
+        }
+
+        // The remaining symbols never have the same type next to each other, pair them with the next one of the same type and skip the symbols in between
+        if (stackSize > 1) {
+            int[] nextSameType = nextTextStyleSymbolIndices;
+            int[] lastSeen = new int[] { -1, -1, -1 };
+            for (int i = stackSize - 1; i >= 0; i--) {
+                int typeIndex = symbols.getType(stack[i]).ordinal() - MarkdownSymbol.Type.FirstTextStyle.ordinal();
+                nextSameType[i] = lastSeen[typeIndex];
+                lastSeen[typeIndex] = i;
+            }
+            int i = 0;
+            while (i < stackSize - 1) {
+                if (nextSameType[i] >= 0) {
+                    result.add(makeTextStyleTag(symbols, stack[i], stack[nextSameType[i]]));
+                    i = nextSameType[i] + 1;
+                } else {
+                    i++;
                 }
             }
         }
@@ -298,14 +456,16 @@ public class SimpleMarkdownTagFinder {
         return result;
     }
 
-    private MarkdownTag makeTextStyleTag(MarkdownSymbol startSymbol, MarkdownSymbol endSymbol) {
-        int weight = Math.min(startSymbol.endPosition - startSymbol.startPosition, endSymbol.endPosition - endSymbol.startPosition);
+    private MarkdownTag makeTextStyleTag(SimpleMarkdownSymbolStorage symbols, int startIndex, int endIndex) {
+        int startSymbolLength = symbols.getEndPosition(startIndex) - symbols.getStartPosition(startIndex);
+        int endSymbolLength = symbols.getEndPosition(endIndex) - symbols.getStartPosition(endIndex);
+        int weight = Math.min(startSymbolLength, endSymbolLength);
         return new MarkdownTag(
-            startSymbol.type == MarkdownSymbol.Type.ThirdTextStyle ? MarkdownTag.Type.AlternativeTextStyle : MarkdownTag.Type.TextStyle, weight,
-            startSymbol.startPosition,
-            endSymbol.endPosition,
-            startSymbol.startPosition + weight,
-            endSymbol.endPosition - weight
+            symbols.getType(startIndex) == MarkdownSymbol.Type.ThirdTextStyle ? MarkdownTag.Type.AlternativeTextStyle : MarkdownTag.Type.TextStyle, weight,
+            symbols.getStartPosition(startIndex),
+            symbols.getEndPosition(endIndex),
+            symbols.getStartPosition(startIndex) + weight,
+            symbols.getEndPosition(endIndex) - weight
         );
     }
 
@@ -314,18 +474,19 @@ public class SimpleMarkdownTagFinder {
     // Check links
     // --
 
-    private List<MarkdownTag> findLinkTags(String text, List<MarkdownSymbol> symbols) {
+    private List<MarkdownTag> findLinkTags(String text, SimpleMarkdownSymbolStorage symbols, int fromIndex, int toIndex) {
         // Find enclosing link symbols and compose tags (with optional URL override)
         ArrayList<MarkdownTag> result = new ArrayList<>();
-        MarkdownSymbol inLinkSymbol = null;
-        for (MarkdownSymbol symbol : symbols) {
-            if (symbol.type == MarkdownSymbol.Type.Newline) {
-                inLinkSymbol = null;
-            } else if (symbol.type == MarkdownSymbol.Type.OpenLink && inLinkSymbol == null) {
-                inLinkSymbol = symbol;
-            } else if (inLinkSymbol != null && symbol.type == MarkdownSymbol.Type.CloseLink) {
-                result.add(makeLinkTag(text, inLinkSymbol, symbol, symbols));
-                inLinkSymbol = null;
+        int inLinkIndex = -1;
+        for (int index = fromIndex; index < toIndex; index++) {
+            MarkdownSymbol.Type type = symbols.getType(index);
+            if (type == MarkdownSymbol.Type.Newline) {
+                inLinkIndex = -1;
+            } else if (type == MarkdownSymbol.Type.OpenLink && inLinkIndex < 0) {
+                inLinkIndex = index;
+            } else if (inLinkIndex >= 0 && type == MarkdownSymbol.Type.CloseLink) {
+                result.add(makeLinkTag(text, symbols, inLinkIndex, index, toIndex));
+                inLinkIndex = -1;
             }
         }
 
@@ -333,34 +494,37 @@ public class SimpleMarkdownTagFinder {
         return result;
     }
 
-    private MarkdownTag makeLinkTag(String text, MarkdownSymbol startSymbol, MarkdownSymbol endSymbol, List<MarkdownSymbol> symbols) {
+    private MarkdownTag makeLinkTag(String text, SimpleMarkdownSymbolStorage symbols, int startIndex, int endIndex, int toIndex) {
         // Set up basic tag
+        int closePosition = symbols.getEndPosition(endIndex);
         MarkdownTag tag = new MarkdownTag(
             MarkdownTag.Type.Link, 0,
-            startSymbol.startPosition,
-            endSymbol.endPosition,
-            startSymbol.startPosition + 1,
-            endSymbol.endPosition - 1
+            symbols.getStartPosition(startIndex),
+            closePosition,
+            symbols.getStartPosition(startIndex) + 1,
+            closePosition - 1
         );
 
-        // Add extra information if found
-        MarkdownSymbol inUrlSymbol = null;
+        // Add extra information if found, symbols are sorted by position so the URL can only start at the symbol after the close link symbol
+        int inUrlIndex = -1;
         int foundDoubleQuotes = 0;
         int cutOffExtraPosition = 0;
-        for (MarkdownSymbol symbol : symbols) {
-            if (symbol.startPosition == endSymbol.endPosition && symbol.type == MarkdownSymbol.Type.OpenUrl) {
-                inUrlSymbol = symbol;
-            } else if (symbol.startPosition > endSymbol.endPosition && (inUrlSymbol == null || symbol.type == MarkdownSymbol.Type.Newline)) {
+        for (int index = endIndex + 1; index < toIndex; index++) {
+            MarkdownSymbol.Type type = symbols.getType(index);
+            int startPosition = symbols.getStartPosition(index);
+            if (startPosition == closePosition && type == MarkdownSymbol.Type.OpenUrl) {
+                inUrlIndex = index;
+            } else if (startPosition > closePosition && (inUrlIndex < 0 || type == MarkdownSymbol.Type.Newline)) {
                 break;
-            } else if (inUrlSymbol != null && symbol.type == MarkdownSymbol.Type.DoubleQuote) {
+            } else if (inUrlIndex >= 0 && type == MarkdownSymbol.Type.DoubleQuote) {
                 if (foundDoubleQuotes == 0) {
-                    cutOffExtraPosition = symbol.startPosition;
+                    cutOffExtraPosition = startPosition;
                 }
                 foundDoubleQuotes += 1;
-            } else if (inUrlSymbol != null && symbol.type == MarkdownSymbol.Type.CloseUrl) {
-                tag.startExtra = inUrlSymbol.endPosition;
-                tag.endExtra = foundDoubleQuotes > 1 ? cutOffExtraPosition : symbol.startPosition;
-                tag.endPosition = symbol.endPosition;
+            } else if (inUrlIndex >= 0 && type == MarkdownSymbol.Type.CloseUrl) {
+                tag.startExtra = symbols.getEndPosition(inUrlIndex);
+                tag.endExtra = foundDoubleQuotes > 1 ? cutOffExtraPosition : startPosition;
+                tag.endPosition = symbols.getEndPosition(index);
                 trimExtraSpaces(text, tag);
                 break;
             }
@@ -375,33 +539,34 @@ public class SimpleMarkdownTagFinder {
     // Check lists
     // --
 
-    private List<MarkdownTag> findListTags(String text, List<MarkdownSymbol> symbols, MarkdownTag section) {
+    private List<MarkdownTag> findListTags(String text, SimpleMarkdownSymbolStorage symbols, int fromIndex, int toIndex, MarkdownTag section) {
         // Find ordered and unordered list items and compose tags
         ArrayList<MarkdownTag> result = new ArrayList<>();
-        MarkdownSymbol inListSymbol = null;
-        for (MarkdownSymbol symbol : symbols) {
-            if (symbol.type == MarkdownSymbol.Type.OrderedListItem || symbol.type == MarkdownSymbol.Type.UnorderedListItem) {
-                if (inListSymbol != null) {
-                    result.add(makeListItemTag(text, inListSymbol, symbol.startPosition));
+        int inListIndex = -1;
+        for (int index = fromIndex; index < toIndex; index++) {
+            MarkdownSymbol.Type type = symbols.getType(index);
+            if (type == MarkdownSymbol.Type.OrderedListItem || type == MarkdownSymbol.Type.UnorderedListItem) {
+                if (inListIndex >= 0) {
+                    result.add(makeListItemTag(text, symbols, inListIndex, symbols.getStartPosition(index)));
                 }
-                inListSymbol = symbol;
+                inListIndex = index;
             }
         }
 
         // Add last list item (if needed) and return result
-        if (inListSymbol != null) {
-            result.add(makeListItemTag(text, inListSymbol, section.endPosition));
+        if (inListIndex >= 0) {
+            result.add(makeListItemTag(text, symbols, inListIndex, section.endPosition));
         }
         return result;
     }
 
-    private MarkdownTag makeListItemTag(String text, MarkdownSymbol startSymbol, int endPosition) {
+    private MarkdownTag makeListItemTag(String text, SimpleMarkdownSymbolStorage symbols, int startIndex, int endPosition) {
         MarkdownTag tag = new MarkdownTag(
-            startSymbol.type == MarkdownSymbol.Type.OrderedListItem ? MarkdownTag.Type.OrderedListItem : MarkdownTag.Type.UnorderedListItem,
-            1 + startSymbol.linePosition / 2,
-            startSymbol.startPosition,
+            symbols.getType(startIndex) == MarkdownSymbol.Type.OrderedListItem ? MarkdownTag.Type.OrderedListItem : MarkdownTag.Type.UnorderedListItem,
+            1 + symbols.getLinePosition(startIndex) / 2,
+            symbols.getStartPosition(startIndex),
             endPosition,
-            startSymbol.endPosition,
+            symbols.getEndPosition(startIndex),
             endPosition
         );
         trimTagSpaces(text, tag);
@@ -448,4 +613,78 @@ public class SimpleMarkdownTagFinder {
     private boolean isWhitespace(char chr) {
         return chr == ' ' || chr == '\t' || chr == '\n';
     }
+
+
+    // --
+    // Visitors collecting tags for findTags and findTagTable
+    // --
+
+    private static abstract class TagCollector implements MarkdownTagVisitor {
+        private final Set<MarkdownTag.Type> tagTypes;
+
+        TagCollector(Set<MarkdownTag.Type> tagTypes) {
+            this.tagTypes = tagTypes;
+        }
+
+        abstract void collect(MarkdownTag tag);
+
+        @Override
+        public void enterSection(@NotNull MarkdownTag sectionTag) {
+            if (tagTypes.contains(sectionTag.type)) {
+                collect(sectionTag);
+            }
+        }
+
+        @Override
+        public void visitLine(@NotNull MarkdownTag lineTag) {
+            collect(lineTag);
+        }
+
+        @Override
+        public void visitTextStyle(@NotNull MarkdownTag textStyleTag) {
+            collect(textStyleTag);
+        }
+
+        @Override
+        public void visitLink(@NotNull MarkdownTag linkTag) {
+            collect(linkTag);
+        }
+
+        @Override
+        public void visitListItem(@NotNull MarkdownTag listItemTag) {
+            collect(listItemTag);
+        }
+
+        @Override
+        public void exitSection(@NotNull MarkdownTag sectionTag) {
+        }
+    }
+
+    private static class TagListCollector extends TagCollector {
+        final ArrayList<MarkdownTag> result = new ArrayList<>();
+
+        TagListCollector(Set<MarkdownTag.Type> tagTypes) {
+            super(tagTypes);
+        }
+
+        @Override
+        void collect(MarkdownTag tag) {
+            tag.populateEscapeSymbols();
+            result.add(tag);
+        }
+    }
+
+    private static class TagTableCollector extends TagCollector {
+        private final MarkdownTagTable table;
+
+        TagTableCollector(Set<MarkdownTag.Type> tagTypes, MarkdownTagTable table) {
+            super(tagTypes);
+            this.table = table;
+        }
+
+        @Override
+        void collect(MarkdownTag tag) {
+            table.addTag(tag);
+        }
+    }
 }
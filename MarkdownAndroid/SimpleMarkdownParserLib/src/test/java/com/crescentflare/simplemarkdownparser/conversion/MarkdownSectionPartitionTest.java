@@ -0,0 +1,159 @@
+package com.crescentflare.simplemarkdownparser.conversion;
+
+import com.crescentflare.simplemarkdownparser.symbolfinder.SimpleMarkdownSymbolFinder;
+import com.crescentflare.simplemarkdownparser.symbolfinder.SimpleMarkdownSymbolFinderJava;
+import com.crescentflare.simplemarkdownparser.tagfinder.MarkdownTag;
+import com.crescentflare.simplemarkdownparser.tagfinder.ProcessedMarkdownTag;
+import com.crescentflare.simplemarkdownparser.tagfinder.SimpleMarkdownTagFinder;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Conversion test: split tags into the inner tags of each section
+ */
+public class MarkdownSectionPartitionTest {
+
+    // --
+    // Tests
+    // --
+
+    @Test
+    public void testProcessedTags() {
+        String[] markdownTextLines = new String[] {
+            "# Header with **bold** text",
+            "",
+            "Paragraph with a [link](https://www.github.com)",
+            "and _another_ line",
+            "",
+            "1. First item",
+            "  * Nested ~~item~~",
+            "2. Second item"
+        };
+        List<ProcessedMarkdownTag> tags = processTags(joinWithNewlines(markdownTextLines));
+        MarkdownSectionPartition partition = new MarkdownSectionPartition();
+        partition.partition(tags);
+        Assert.assertEquals(3, partition.getSectionCount());
+        Assert.assertEquals(describeExpectedPartition(tags), describePartition(partition));
+    }
+
+    @Test
+    public void testManySections() {
+        StringBuilder markdownText = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            markdownText.append("Paragraph ").append(i).append(" with **bold** text\n\n");
+        }
+        List<ProcessedMarkdownTag> tags = processTags(markdownText.toString());
+        MarkdownSectionPartition partition = new MarkdownSectionPartition();
+        partition.partition(tags);
+        Assert.assertEquals(1000, partition.getSectionCount());
+        Assert.assertEquals(describeExpectedPartition(tags), describePartition(partition));
+    }
+
+    @Test
+    public void testUnsortedTags() {
+        // Hand-built lists don't have to be sorted on position, inner tags should still keep the order of the list
+        String[] markdownTextLines = new String[] {
+            "Paragraph with **bold**, _italics_ and a [link](https://www.github.com)",
+            "",
+            "* Item one",
+            "* Item **two**",
+            "",
+            "## Header ~~text~~"
+        };
+        List<ProcessedMarkdownTag> tags = processTags(joinWithNewlines(markdownTextLines));
+        tags.add(new ProcessedMarkdownTag(MarkdownTag.Type.TextStyle, 1, 0, 0));
+        tags.add(new ProcessedMarkdownTag(MarkdownTag.Type.TextStyle, 2, 0, 0));
+        Random random = new Random(1);
+        MarkdownSectionPartition partition = new MarkdownSectionPartition();
+        for (int i = 0; i < 20; i++) {
+            Collections.shuffle(tags, random);
+            partition.partition(tags);
+            Assert.assertEquals(describeExpectedPartition(tags), describePartition(partition));
+        }
+    }
+
+    @Test
+    public void testReuseAfterTrim() {
+        // Partitions can be reused for smaller and larger lists, also after their capacity has been trimmed
+        StringBuilder markdownText = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            markdownText.append("* Item ").append(i).append(" with _italics_\n");
+        }
+        List<ProcessedMarkdownTag> largeTags = processTags(markdownText.toString());
+        List<ProcessedMarkdownTag> smallTags = processTags("Paragraph with **bold** text\n\n# Header");
+        MarkdownSectionPartition partition = new MarkdownSectionPartition();
+        partition.partition(largeTags);
+        Assert.assertEquals(describeExpectedPartition(largeTags), describePartition(partition));
+        partition.partition(smallTags);
+        Assert.assertEquals(describeExpectedPartition(smallTags), describePartition(partition));
+        partition.trimCapacity(64);
+        Assert.assertEquals(64, partition.getCapacity());
+        partition.partition(smallTags);
+        Assert.assertEquals(describeExpectedPartition(smallTags), describePartition(partition));
+        partition.partition(largeTags);
+        Assert.assertEquals(describeExpectedPartition(largeTags), describePartition(partition));
+    }
+
+
+    // --
+    // Helpers
+    // --
+
+    private List<ProcessedMarkdownTag> processTags(String markdownText) {
+        SimpleMarkdownSymbolFinder symbolFinder = new SimpleMarkdownSymbolFinderJava();
+        symbolFinder.scanText(markdownText);
+        List<MarkdownTag> tags = new SimpleMarkdownTagFinder().findTags(markdownText, symbolFinder.getSymbolStorage());
+        return new ArrayList<>(SimpleMarkdownTextProcessor.process(markdownText, tags).tags);
+    }
+
+    private String describeExpectedPartition(List<ProcessedMarkdownTag> tags) {
+        // Check every tag for every section, in the order of the list
+        StringBuilder result = new StringBuilder();
+        for (int sectionIndex = 0; sectionIndex < tags.size(); sectionIndex++) {
+            ProcessedMarkdownTag sectionTag = tags.get(sectionIndex);
+            if (sectionTag.type.isSection()) {
+                result.append(sectionIndex).append(":");
+                for (int i = 0; i < tags.size(); i++) {
+                    ProcessedMarkdownTag tag = tags.get(i);
+                    if (!tag.type.isSection() && tag.startPosition >= sectionTag.startPosition && tag.endPosition <= sectionTag.endPosition) {
+                        result.append(" ").append(i);
+                    }
+                }
+                result.append("\n");
+            }
+        }
+        return result.toString();
+    }
+
+    private String describePartition(MarkdownSectionPartition partition) {
+        StringBuilder result = new StringBuilder();
+        for (int section = 0; section < partition.getSectionCount(); section++) {
+            result.append(partition.getSectionTagIndex(section)).append(":");
+            for (int innerIndex = partition.getFirstInnerIndex(section); innerIndex < partition.getEndInnerIndex(section); innerIndex++) {
+                result.append(" ").append(partition.getInnerTagIndex(innerIndex));
+            }
+            result.append("\n");
+        }
+        return result.toString();
+    }
+
+    private String joinWithNewlines(String[] stringArray) {
+        StringBuilder joinedText = new StringBuilder();
+        boolean firstLine = true;
+        for (String string : stringArray) {
+            if (!firstLine) {
+                joinedText.append("\n");
+            }
+            joinedText.append(string);
+            firstLine = false;
+        }
+        return joinedText.toString();
+    }
+}
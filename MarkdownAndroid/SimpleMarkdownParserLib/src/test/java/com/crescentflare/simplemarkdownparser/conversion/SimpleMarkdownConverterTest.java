@@ -0,0 +1,256 @@
+package com.crescentflare.simplemarkdownparser.conversion;
+
+import android.text.SpannableStringBuilder;
+
+import com.crescentflare.simplemarkdownparser.tagfinder.MarkdownTag;
+
+import junit.framework.Assert;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion test: convert markdown text to html
+ */
+public class SimpleMarkdownConverterTest {
+
+    // --
+    // Tests
+    // --
+
+    @Test
+    public void testToHtmlStringParallel() {
+        // Small parts split the text at many sections, the joined result should be the same as a sequential conversion
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            String markdownText = createSampleText(20);
+            String expectedHtml = SimpleMarkdownConverter.toHtmlString(markdownText);
+            Assert.assertEquals(expectedHtml, SimpleMarkdownConverter.toHtmlStringParallel(markdownText, new MarkdownParseWorkspace(), executor, 16, 1));
+            Assert.assertEquals(expectedHtml, SimpleMarkdownConverter.toHtmlStringParallel(markdownText, new MarkdownParseWorkspace(), executor, 4, 64));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testToHtmlStringParallelOnSameExecutor() throws Exception {
+        // Parts which can't start on the executor are converted on the calling thread instead of waiting forever
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final String markdownText = createSampleText(20);
+            Future<String> result = executor.submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    return SimpleMarkdownConverter.toHtmlStringParallel(markdownText, new MarkdownParseWorkspace(), executor, 16, 1);
+                }
+            });
+            Assert.assertEquals(SimpleMarkdownConverter.toHtmlString(markdownText), result.get(30, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    @Test
+    public void testWriteHtml() throws IOException {
+        // Writing to an appendable gives the same html as a conversion to a string, also when reusing a workspace
+        MarkdownParseWorkspace workspace = new MarkdownParseWorkspace();
+        for (String markdownText : new String[] { "", "Single line", createSampleText(1), createSampleText(50) }) {
+            String expectedHtml = SimpleMarkdownConverter.toHtmlString(markdownText);
+            StringBuilder builder = new StringBuilder();
+            StringWriter writer = new StringWriter();
+            StringBuilder documentBuilder = new StringBuilder();
+            SimpleMarkdownConverter.writeHtml(markdownText, builder);
+            SimpleMarkdownConverter.writeHtml(markdownText, writer, workspace);
+            SimpleMarkdownConverter.writeHtml(SimpleMarkdownConverter.toDocument(markdownText), documentBuilder);
+            Assert.assertEquals(expectedHtml, builder.toString());
+            Assert.assertEquals(expectedHtml, writer.toString());
+            Assert.assertEquals(expectedHtml, documentBuilder.toString());
+        }
+    }
+
+    @Test
+    public void testWriteHtmlUtf8() throws IOException {
+        // Encoded html should be the same as encoding the html string, including surrogates and output spanning multiple chunks
+        String[] markdownTexts = new String[] {
+            "",
+            "Accents \u00E9\u00E8, **euro \u20AC** and an _emoji \uD83D\uDE00_",
+            "Unpaired \uD800 high and \uDC00 low surrogates, reversed \uDC00\uD800 and at the end \uD83D",
+            createUnicodeText(0),
+            createUnicodeText(1),
+            createUnicodeText(2),
+            createUnicodeText(3)
+        };
+        for (String markdownText : markdownTexts) {
+            byte[] expectedBytes = SimpleMarkdownConverter.toHtmlString(markdownText).getBytes("UTF-8");
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            ByteArrayOutputStream documentStream = new ByteArrayOutputStream();
+            ByteBuffer buffer = ByteBuffer.allocate(expectedBytes.length);
+            SimpleMarkdownConverter.writeHtmlUtf8(markdownText, stream);
+            SimpleMarkdownConverter.writeHtmlUtf8(SimpleMarkdownConverter.toDocument(markdownText), documentStream);
+            SimpleMarkdownConverter.writeHtmlUtf8(markdownText, buffer);
+            Assert.assertTrue(Arrays.equals(expectedBytes, stream.toByteArray()));
+            Assert.assertTrue(Arrays.equals(expectedBytes, documentStream.toByteArray()));
+            Assert.assertEquals(expectedBytes.length, buffer.position());
+            Assert.assertTrue(Arrays.equals(expectedBytes, buffer.array()));
+        }
+        Assert.assertTrue(SimpleMarkdownConverter.toHtmlString(createUnicodeText(0)).getBytes("UTF-8").length > 8192 * 2);
+    }
+
+    @Test
+    public void testWriteHtmlUtf8BufferOverflow() throws IOException {
+        // A buffer which is too small throws an exception instead of truncating the html
+        for (String markdownText : new String[] { "Short **text** \u20AC", createUnicodeText(0) }) {
+            int length = SimpleMarkdownConverter.toHtmlString(markdownText).getBytes("UTF-8").length;
+            try {
+                SimpleMarkdownConverter.writeHtmlUtf8(markdownText, ByteBuffer.allocate(length - 1));
+                Assert.fail("Expected a buffer overflow");
+            } catch (BufferOverflowException ignored) {
+            }
+        }
+    }
+
+    @Test
+    public void testDocumentMatchesText() {
+        // Rendering a parsed document should give the same result as converting the text directly
+        String markdownText = createSampleText(3);
+        MarkdownDocument document = SimpleMarkdownConverter.toDocument(markdownText);
+        Assert.assertEquals(SimpleMarkdownConverter.toHtmlString(markdownText), SimpleMarkdownConverter.toHtmlString(document));
+        RecordingSpanGenerator expectedSpans = new RecordingSpanGenerator();
+        RecordingSpanGenerator documentSpans = new RecordingSpanGenerator();
+        Assert.assertEquals(recordSpans(markdownText, expectedSpans), recordSpans(document, documentSpans));
+        Assert.assertTrue(expectedSpans.spans.size() > 0);
+        Assert.assertEquals(expectedSpans.spans, documentSpans.spans);
+    }
+
+    @Test
+    public void testBatchSpanOrder() {
+        // Batched spans should be the same spans in the same order as applying them one by one, with a batch for each section or spacer
+        StringBuilder markdownText = new StringBuilder(createSampleText(3));
+        for (int i = 0; i < 40; i++) {
+            markdownText.append("**Bold ").append(i).append("** and _italics_ ");
+        }
+        RecordingSpanGenerator expectedSpans = new RecordingSpanGenerator();
+        RecordingBatchSpanGenerator batchSpans = new RecordingBatchSpanGenerator();
+        RecordingBatchSpanGenerator documentBatchSpans = new RecordingBatchSpanGenerator();
+        recordSpans(markdownText.toString(), expectedSpans);
+        recordSpans(markdownText.toString(), batchSpans);
+        recordSpans(SimpleMarkdownConverter.toDocument(markdownText.toString()), documentBatchSpans);
+        Assert.assertEquals(expectedSpans.spans, batchSpans.spans);
+        Assert.assertEquals(expectedSpans.spans, documentBatchSpans.spans);
+        Assert.assertEquals(batchSpans.batchStartTypes, documentBatchSpans.batchStartTypes);
+        for (MarkdownTag.Type type : batchSpans.batchStartTypes) {
+            Assert.assertTrue(type.isSection() || type == MarkdownTag.Type.SectionSpacer);
+        }
+        Assert.assertTrue(batchSpans.maxBatchSize > 16);
+    }
+
+
+    // --
+    // Helpers
+    // --
+
+    private String recordSpans(String markdownText, MarkdownSpanGenerator spanGenerator) {
+        // Android classes are stubs in unit tests, the recording span generators don't use the spannable so spans are applied without one
+        SimpleMarkdownTextProcessor processor = SimpleMarkdownConverter.processSpannable(markdownText, spanGenerator, new MarkdownParseWorkspace());
+        SimpleMarkdownConverter.applySpans(null, processor.tags, spanGenerator);
+        return processor.text;
+    }
+
+    private String recordSpans(MarkdownDocument document, MarkdownSpanGenerator spanGenerator) {
+        SimpleMarkdownConverter.applySpans(null, document, spanGenerator);
+        return SimpleMarkdownConverter.getSpannableText(document);
+    }
+
+    private String createSampleText(int repeat) {
+        String[] markdownTextLines = new String[] {
+            "# Header with **bold** text",
+            "A paragraph with _italics_, ~~strike through~~ and a [link](https://www.github.com \"Link title\")",
+            "continuing on the next line with an escaped \\*symbol\\*",
+            "",
+            "1. First item",
+            "2. Second item",
+            "  * Nested item",
+            "",
+            "## Second header",
+            "Paragraph with an escaped \\",
+            "newline",
+            "",
+            ""
+        };
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < repeat; i++) {
+            for (String line : markdownTextLines) {
+                result.append(line).append("\n");
+            }
+        }
+        return result.toString();
+    }
+
+
+    private String createUnicodeText(int offset) {
+        // Long text with multi-byte characters, the offset moves them over the chunk boundaries of the encoder
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < offset; i++) {
+            result.append("a");
+        }
+        for (int i = 0; i < 600; i++) {
+            result.append("* Item \u00E9 **\u20AC").append(i).append("** \uD83D\uDE00 text\n");
+        }
+        return result.toString();
+    }
+
+    private static class RecordingSpanGenerator implements MarkdownSpanGenerator {
+        final List<String> spans = new ArrayList<>();
+
+        @Override
+        public void applySpan(SpannableStringBuilder builder, @NotNull MarkdownTag.Type type, int weight, int start, int end, @NotNull String extra) {
+            spans.add(type + " " + weight + " " + start + "-" + end + " " + extra);
+        }
+
+        @Override
+        public void applySectionSpacerSpan(SpannableStringBuilder builder, @NotNull MarkdownTag.Type previousSectionType, int previousSectionWeight, @NotNull MarkdownTag.Type nextSectionType, int nextSectionWeight, int start, int end) {
+            spans.add("Spacer " + previousSectionType + " " + previousSectionWeight + " " + nextSectionType + " " + nextSectionWeight + " " + start + "-" + end);
+        }
+
+        @NotNull
+        @Override
+        public String getListToken(@NotNull MarkdownTag.Type type, int weight, int index) {
+            return type == MarkdownTag.Type.OrderedListItem ? index + "." : "*";
+        }
+    }
+
+    private static class RecordingBatchSpanGenerator extends RecordingSpanGenerator implements MarkdownBatchSpanGenerator {
+        final List<MarkdownTag.Type> batchStartTypes = new ArrayList<>();
+        int maxBatchSize = 0;
+
+        @Override
+        public void applySpan(SpannableStringBuilder builder, @NotNull MarkdownTag.Type type, int weight, int start, int end, @NotNull String extra) {
+            Assert.fail("Spans should be applied in batches");
+        }
+
+        @Override
+        public void applySpans(SpannableStringBuilder builder, @NotNull MarkdownSpanBatch spans) {
+            Assert.assertTrue(spans.size() > 0);
+            batchStartTypes.add(spans.getType(0));
+            maxBatchSize = Math.max(maxBatchSize, spans.size());
+            for (int i = 0; i < spans.size(); i++) {
+                super.applySpan(builder, spans.getType(i), spans.getWeight(i), spans.getStartPosition(i), spans.getEndPosition(i), spans.getExtra(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.crescentflare.simplemarkdownparser.conversion;
+
+import com.crescentflare.simplemarkdownparser.symbolfinder.MarkdownSymbol;
+import com.crescentflare.simplemarkdownparser.symbolfinder.SimpleMarkdownSymbolFinder;
+import com.crescentflare.simplemarkdownparser.symbolfinder.SimpleMarkdownSymbolFinderJava;
+import com.crescentflare.simplemarkdownparser.tagfinder.MarkdownTag;
+import com.crescentflare.simplemarkdownparser.tagfinder.SimpleMarkdownTagFinder;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Conversion test: extract headings and links from markdown text
+ */
+public class SimpleMarkdownExtractorTest {
+
+    // --
+    // Tests
+    // --
+
+    @Test
+    public void testFindHeadings() {
+        String[] markdownTextLines = new String[] {
+            "# First header",
+            "Some text",
+            "",
+            "### Escaped \\# and **bold** header",
+            "  ## Indented header",
+            "\\# No header when escaped",
+            "###### Deep header"
+        };
+        String markdownText = joinWithNewlines(markdownTextLines);
+        List<MarkdownHeading> headings = SimpleMarkdownExtractor.findHeadings(markdownText);
+        Assert.assertEquals(4, headings.size());
+        assertHeading(headings.get(0), markdownText, "First header", 1);
+        assertHeading(headings.get(1), markdownText, "Escaped # and **bold** header", 3);
+        assertHeading(headings.get(2), markdownText, "Indented header", 2);
+        assertHeading(headings.get(3), markdownText, "Deep header", 6);
+    }
+
+    @Test
+    public void testFindHeadingsKeepsMarkup() {
+        List<MarkdownHeading> headings = SimpleMarkdownExtractor.findHeadings("# **a**");
+        Assert.assertEquals(1, headings.size());
+        Assert.assertEquals("**a**", headings.get(0).text);
+    }
+
+    @Test
+    public void testFindLinks() {
+        String[] markdownTextLines = new String[] {
+            "A [link](https://www.github.com) in a paragraph",
+            "# Header with a [_styled_ link](https://www.github.com \"Link title\")",
+            "* List item with [https://www.example.com]",
+            "An [escaped \\] bracket](https://www.example.com/escaped)",
+            "No \\[link](https://www.example.com/none) when escaped"
+        };
+        String markdownText = joinWithNewlines(markdownTextLines);
+        List<MarkdownLink> links = SimpleMarkdownExtractor.findLinks(markdownText);
+        Assert.assertEquals(4, links.size());
+        assertLink(links.get(0), markdownText, "link", "https://www.github.com");
+        assertLink(links.get(1), markdownText, "_styled_ link", "https://www.github.com");
+        assertLink(links.get(2), markdownText, "https://www.example.com", "https://www.example.com");
+        assertLink(links.get(3), markdownText, "escaped ] bracket", "https://www.example.com/escaped");
+    }
+
+    @Test
+    public void testMatchTagFinder() {
+        // The extractor scans a limited set of symbols, the result should be the same as filtering tags from all symbols
+        String[] markdownTextLines = new String[] {
+            "# Header with a [link](https://www.github.com)",
+            "Text with **bold [and a link](https://www.example.com \"Title\")** inside",
+            "",
+            "1. Ordered \\*item\\*",
+            "  * Nested [item link]",
+            "",
+            "## Second \\\\ header *with* _styling_",
+            "Paragraph with an escaped \\",
+            "newline and [another](link)"
+        };
+        String markdownText = joinWithNewlines(markdownTextLines);
+        List<MarkdownTag> tags = findAllTags(markdownText);
+        List<MarkdownHeading> headings = SimpleMarkdownExtractor.findHeadings(markdownText);
+        List<MarkdownLink> links = SimpleMarkdownExtractor.findLinks(markdownText);
+        int headingIndex = 0;
+        int linkIndex = 0;
+        for (MarkdownTag tag : tags) {
+            if (tag.type == MarkdownTag.Type.Header) {
+                Assert.assertTrue(headingIndex < headings.size());
+                MarkdownHeading heading = headings.get(headingIndex++);
+                Assert.assertEquals(tag.weight, heading.weight);
+                Assert.assertEquals(tag.startText, heading.startPosition);
+                Assert.assertEquals(tag.endText, heading.endPosition);
+                Assert.assertEquals(removeEscapes(markdownText, tag), heading.text);
+            } else if (tag.type == MarkdownTag.Type.Link) {
+                Assert.assertTrue(linkIndex < links.size());
+                MarkdownLink link = links.get(linkIndex++);
+                String url = tag.startExtra >= 0 ? markdownText.substring(tag.startExtra, tag.endExtra) : markdownText.substring(tag.startText, tag.endText);
+                Assert.assertEquals(tag.startText, link.startPosition);
+                Assert.assertEquals(tag.endText, link.endPosition);
+                Assert.assertEquals(removeEscapes(markdownText, tag), link.text);
+                Assert.assertEquals(url, link.url);
+            }
+        }
+        Assert.assertEquals(2, headingIndex);
+        Assert.assertEquals(4, linkIndex);
+        Assert.assertEquals(headingIndex, headings.size());
+        Assert.assertEquals(linkIndex, links.size());
+    }
+
+
+    // --
+    // Helpers
+    // --
+
+    private void assertHeading(MarkdownHeading heading, String markdownText, String text, int weight) {
+        Assert.assertEquals(text, heading.text);
+        Assert.assertEquals(weight, heading.weight);
+        Assert.assertEquals(text, markdownText.substring(heading.startPosition, heading.endPosition).replace("\\", ""));
+    }
+
+    private void assertLink(MarkdownLink link, String markdownText, String text, String url) {
+        Assert.assertEquals(text, link.text);
+        Assert.assertEquals(url, link.url);
+        Assert.assertEquals(text, markdownText.substring(link.startPosition, link.endPosition).replace("\\", ""));
+    }
+
+    private List<MarkdownTag> findAllTags(String markdownText) {
+        SimpleMarkdownSymbolFinder symbolFinder = new SimpleMarkdownSymbolFinderJava();
+        symbolFinder.scanText(markdownText);
+        return new SimpleMarkdownTagFinder().findTags(markdownText, symbolFinder.getSymbolStorage());
+    }
+
+    private String removeEscapes(String markdownText, MarkdownTag tag) {
+        StringBuilder result = new StringBuilder();
+        int position = tag.startText;
+        for (MarkdownSymbol escapeSymbol : tag.escapeSymbols) {
+            if (escapeSymbol.startPosition >= position && escapeSymbol.startPosition < tag.endText) {
+                result.append(markdownText, position, escapeSymbol.startPosition);
+                position = escapeSymbol.endPosition;
+            }
+        }
+        result.append(markdownText, position, tag.endText);
+        return result.toString();
+    }
+
+    private String joinWithNewlines(String[] stringArray) {
+        StringBuilder joinedText = new StringBuilder();
+        boolean firstLine = true;
+        for (String string : stringArray) {
+            if (!firstLine) {
+                joinedText.append("\n");
+            }
+            joinedText.append(string);
+            firstLine = false;
+        }
+        return joinedText.toString();
+    }
+}
@@ -0,0 +1,198 @@
+package com.crescentflare.simplemarkdownparser.conversion;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Conversion test: convert markdown tags to html
+ */
+public class SimpleMarkdownHtmlProcessorTest {
+
+    // --
+    // Tests
+    // --
+
+    @Test
+    public void testEscaping() {
+        String[] expectedHtmlLines = new String[] {
+            "<h1>Header &amp; &lt;b&gt;</h1>",
+            "<p>Text with &quot;quotes&quot; &amp; &#39;apostrophes&#39; &lt; &gt; <b>bold &lt;i&gt;</b></p>",
+            "<ul><li>Item &amp; &lt;tag&gt;</li>",
+            "<ol><li>Sub &quot;item&quot; &#39;x&#39;</li></ol></ul><br/>",
+            "<p><a href=\"https://www.github.com/?a=1&amp;b=&lt;2&gt;&#39;3&#39;\">Link &lt;text&gt;</a> and <a href=\"https://www.github.com/?x&lt;y&amp;z&gt;&#39;&quot;\">https://www.github.com/?x&lt;y&amp;z&gt;&#39;&quot;</a></p>"
+        };
+        Assert.assertEquals(joinWithNewlines(expectedHtmlLines), convertWithEscaping(createSpecialCharacterText(), true));
+    }
+
+    @Test
+    public void testEscapingWriters() throws IOException {
+        // The appendable and utf-8 writers should escape in the same way as the string conversion
+        boolean wasEscaping = SimpleMarkdownConverter.isHtmlEscaping();
+        try {
+            SimpleMarkdownConverter.setHtmlEscaping(true);
+            String markdownText = createSpecialCharacterText() + "\n\n**Unicode \u00E9 & \uD83D\uDE00 <text>**";
+            String expectedHtml = SimpleMarkdownConverter.toHtmlString(markdownText);
+            StringBuilder builder = new StringBuilder();
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            ByteArrayOutputStream documentStream = new ByteArrayOutputStream();
+            SimpleMarkdownConverter.writeHtml(markdownText, builder);
+            SimpleMarkdownConverter.writeHtmlUtf8(markdownText, stream);
+            SimpleMarkdownConverter.writeHtmlUtf8(SimpleMarkdownConverter.toDocument(markdownText), documentStream);
+            Assert.assertEquals(expectedHtml, builder.toString());
+            Assert.assertTrue(Arrays.equals(builder.toString().getBytes("UTF-8"), stream.toByteArray()));
+            Assert.assertTrue(Arrays.equals(stream.toByteArray(), documentStream.toByteArray()));
+        } finally {
+            SimpleMarkdownConverter.setHtmlEscaping(wasEscaping);
+        }
+    }
+
+    @Test
+    public void testNoEscapingByDefault() {
+        // Without escaping, special characters are written as they are
+        String[] expectedHtmlLines = new String[] {
+            "<h1>Header & <b></h1>",
+            "<p>Text with \"quotes\" & 'apostrophes' < > <b>bold <i></b></p>",
+            "<ul><li>Item & <tag></li>",
+            "<ol><li>Sub \"item\" 'x'</li></ol></ul><br/>",
+            "<p><a href=\"https://www.github.com/?a=1&b=<2>'3'\">Link <text></a> and <a href=\"https://www.github.com/?x<y&z>'\"\">https://www.github.com/?x<y&z>'\"</a></p>"
+        };
+        Assert.assertFalse(SimpleMarkdownConverter.isHtmlEscaping());
+        Assert.assertEquals(joinWithNewlines(expectedHtmlLines), SimpleMarkdownConverter.toHtmlString(createSpecialCharacterText()));
+        Assert.assertEquals(joinWithNewlines(expectedHtmlLines), convertWithEscaping(createSpecialCharacterText(), false));
+    }
+
+    @Test
+    public void testMixedNestedLists() {
+        // Lists are opened and closed when the level changes, also when skipping a level
+        String[] markdownTextLines = new String[] {
+            "* Level 1",
+            "  1. Level 2",
+            "    * Level 3",
+            "      1. Level 4",
+            "        * Level 5",
+            "      2. Back to 4",
+            "  2. Back to 2",
+            "* Back to 1",
+            "    1. Skipped to 3",
+            "* Last"
+        };
+        String[] expectedHtmlLines = new String[] {
+            "<ul><li>Level 1</li>",
+            "<ol><li>Level 2</li>",
+            "<ul><li>Level 3</li>",
+            "<ol><li>Level 4</li>",
+            "<ul><li>Level 5</li></ul>",
+            "<li>Back to 4</li></ol></ul>",
+            "<li>Back to 2</li></ol>",
+            "<li>Back to 1</li>",
+            "<ul><ol><li>Skipped to 3</li></ol></ul>",
+            "<li>Last</li></ul><br/>"
+        };
+        Assert.assertEquals(joinWithNewlines(expectedHtmlLines), SimpleMarkdownConverter.toHtmlString(joinWithNewlines(markdownTextLines)));
+    }
+
+    @Test
+    public void testDeepNestedLists() {
+        // Each level alternates between an ordered and unordered list, all of them are closed at the end
+        int depth = 40;
+        StringBuilder markdownText = new StringBuilder();
+        StringBuilder expectedHtml = new StringBuilder();
+        StringBuilder expectedClosingTags = new StringBuilder();
+        for (int level = 0; level < depth; level++) {
+            boolean ordered = level % 2 == 1;
+            for (int i = 0; i < level; i++) {
+                markdownText.append("  ");
+            }
+            markdownText.append(ordered ? "1. " : "* ").append("Item ").append(level).append("\n");
+            if (level > 0) {
+                expectedHtml.append("\n");
+            }
+            expectedHtml.append(ordered ? "<ol>" : "<ul>").append("<li>Item ").append(level).append("</li>");
+            expectedClosingTags.insert(0, ordered ? "</ol>" : "</ul>");
+        }
+        Assert.assertEquals(expectedHtml.toString() + expectedClosingTags.toString() + "<br/>", SimpleMarkdownConverter.toHtmlString(markdownText.toString()));
+    }
+
+    @Test
+    public void testLineBreaksAtSectionEnds() {
+        // The line break after a section is left out at the end of a paragraph or list, lists end with a line break tag instead
+        String[] markdownTextLines = new String[] {
+            "Paragraph line one",
+            "line two",
+            "",
+            "",
+            "",
+            "* Item",
+            "* Item",
+            "  1. Sub",
+            "",
+            "",
+            "1. Ordered",
+            "",
+            "Paragraph after list",
+            "",
+            "# Header",
+            "Last paragraph",
+            ""
+        };
+        String[] expectedHtmlLines = new String[] {
+            "<p>Paragraph line one<br/>",
+            "line two</p>",
+            "<ul><li>Item</li>",
+            "<li>Item</li>",
+            "<ol><li>Sub</li></ol></ul><br/>",
+            "<ol><li>Ordered</li></ol><br/>",
+            "<p>Paragraph after list</p>",
+            "<h1>Header</h1>",
+            "<p>Last paragraph</p>"
+        };
+        Assert.assertEquals(joinWithNewlines(expectedHtmlLines), SimpleMarkdownConverter.toHtmlString(joinWithNewlines(markdownTextLines)));
+    }
+
+
+    // --
+    // Helpers
+    // --
+
+    private String convertWithEscaping(String markdownText, boolean escaping) {
+        boolean wasEscaping = SimpleMarkdownConverter.isHtmlEscaping();
+        try {
+            SimpleMarkdownConverter.setHtmlEscaping(escaping);
+            return SimpleMarkdownConverter.toHtmlString(markdownText);
+        } finally {
+            SimpleMarkdownConverter.setHtmlEscaping(wasEscaping);
+        }
+    }
+
+    private String createSpecialCharacterText() {
+        String[] markdownTextLines = new String[] {
+            "# Header & <b>",
+            "",
+            "Text with \"quotes\" & 'apostrophes' < > **bold <i>**",
+            "",
+            "* Item & <tag>",
+            "  1. Sub \"item\" 'x'",
+            "",
+            "[Link <text>](https://www.github.com/?a=1&b=<2>'3') and [https://www.github.com/?x<y&z>'\"]"
+        };
+        return joinWithNewlines(markdownTextLines);
+    }
+
+    private String joinWithNewlines(String[] stringArray) {
+        StringBuilder joinedText = new StringBuilder();
+        boolean firstLine = true;
+        for (String string : stringArray) {
+            if (!firstLine) {
+                joinedText.append("\n");
+            }
+            joinedText.append(string);
+            firstLine = false;
+        }
+        return joinedText.toString();
+    }
+}
@@ -0,0 +1,176 @@
+package com.crescentflare.simplemarkdownparser.conversion;
+
+import com.crescentflare.simplemarkdownparser.symbolfinder.MarkdownSymbol;
+import com.crescentflare.simplemarkdownparser.symbolfinder.SimpleMarkdownSymbolFinder;
+import com.crescentflare.simplemarkdownparser.symbolfinder.SimpleMarkdownSymbolFinderJava;
+import com.crescentflare.simplemarkdownparser.tagfinder.MarkdownTag;
+import com.crescentflare.simplemarkdownparser.tagfinder.ProcessedMarkdownTag;
+import com.crescentflare.simplemarkdownparser.tagfinder.SimpleMarkdownTagFinder;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Conversion test: process markdown tags into text and processed tags
+ */
+public class SimpleMarkdownTextProcessorTest {
+
+    // --
+    // Tests
+    // --
+
+    @Test
+    public void testHandBuiltTagsWithEscapes() {
+        // Tags which aren't created by the tag finder use their own escape symbols
+        String markdownText = "Text with \\*escapes\\* \\\\";
+        List<MarkdownSymbol> escapeSymbols = new ArrayList<>();
+        escapeSymbols.add(new MarkdownSymbol(MarkdownSymbol.Type.Escape, 0, 10, 11, 10));
+        escapeSymbols.add(new MarkdownSymbol(MarkdownSymbol.Type.Escape, 0, 19, 20, 19));
+        escapeSymbols.add(new MarkdownSymbol(MarkdownSymbol.Type.Escape, 0, 22, 23, 22));
+        List<MarkdownTag> tags = new ArrayList<>();
+        tags.add(new MarkdownTag(MarkdownTag.Type.Paragraph, 0, 0, markdownText.length(), escapeSymbols));
+        tags.add(new MarkdownTag(MarkdownTag.Type.Line, 0, 0, markdownText.length(), escapeSymbols));
+        SimpleMarkdownTextProcessor processor = SimpleMarkdownTextProcessor.process(markdownText, tags);
+        Assert.assertEquals("Text with *escapes* \\", processor.text);
+        assertProcessedTags(processor, markdownText);
+    }
+
+    @Test
+    public void testOnlySectionEscapesRemoved() {
+        // Escapes are removed when they belong to the section tag, escapes of inner tags are ignored (also when other tags have escapes)
+        String markdownText = "ab\\*cd";
+        List<MarkdownSymbol> escapeSymbols = new ArrayList<>();
+        escapeSymbols.add(new MarkdownSymbol(MarkdownSymbol.Type.Escape, 0, 2, 3, 2));
+        List<MarkdownTag> tags = new ArrayList<>();
+        tags.add(new MarkdownTag(MarkdownTag.Type.Paragraph, 0, 0, markdownText.length()));
+        tags.add(new MarkdownTag(MarkdownTag.Type.Line, 0, 0, markdownText.length(), escapeSymbols));
+        Assert.assertEquals("ab\\*cd", SimpleMarkdownTextProcessor.process(markdownText, tags).text);
+    }
+
+    @Test
+    public void testReplacedEscapeSymbols() {
+        // Escape symbols replaced after finding tags are used instead of the escapes found in the text
+        String markdownText = "Keep \\*this\\* escape";
+        List<MarkdownTag> tags = findTags(markdownText);
+        for (MarkdownTag tag : tags) {
+            List<MarkdownSymbol> escapeSymbols = new ArrayList<>();
+            for (MarkdownSymbol escapeSymbol : tag.escapeSymbols) {
+                if (escapeSymbol.startPosition > 5) {
+                    escapeSymbols.add(escapeSymbol);
+                }
+            }
+            tag.setEscapeSymbols(escapeSymbols);
+        }
+        Assert.assertEquals("Keep \\*this* escape", SimpleMarkdownTextProcessor.process(markdownText, tags).text);
+    }
+
+    @Test
+    public void testHandBuiltTagsMatchTagFinder() {
+        // Copies of the found tags with their escape symbols in a new list give the same result as the found tags
+        String markdownText = "# Escaped \\# header\n\nParagraph with \\*escapes\\* and a [\\[link\\]](https://www.github.com)\n\n* Item \\_one\\_\n* Item two \\\\";
+        List<MarkdownTag> tags = findTags(markdownText);
+        List<MarkdownTag> copiedTags = new ArrayList<>();
+        for (MarkdownTag tag : tags) {
+            copiedTags.add(new MarkdownTag(tag.type, tag.weight, tag.startPosition, tag.endPosition, tag.startText, tag.endText, tag.startExtra, tag.endExtra, new ArrayList<>(tag.escapeSymbols)));
+        }
+        SimpleMarkdownTextProcessor expected = SimpleMarkdownTextProcessor.process(markdownText, tags);
+        SimpleMarkdownTextProcessor processor = SimpleMarkdownTextProcessor.process(markdownText, copiedTags);
+        Assert.assertEquals(expected.text, processor.text);
+        Assert.assertEquals(describeTags(expected.tags), describeTags(processor.tags));
+    }
+
+
+    @Test
+    public void testProcessedPositionsWithEscapesAndNesting() {
+        // Tag positions are moved by the removed escapes, markup before them and nested styles within the same list section
+        String markdownText = "* Item \\*one\\* with **bold _nested_ text**\n  1. Sub [\\[link\\]](https://www.github.com) item\n* Last \\\\ item ~~gone~~";
+        SimpleMarkdownTextProcessor processor = SimpleMarkdownTextProcessor.process(markdownText, findTags(markdownText));
+        String[] expectedTags = new String[] {
+            "List: Item *one* with bold nested text\nSub [link] item\nLast \\ item gone",
+            "Line: Item *one* with bold nested text",
+            "UnorderedListItem: Item *one* with bold nested text",
+            "TextStyle: bold nested text",
+            "TextStyle: nested",
+            "Line: Sub [link] item",
+            "OrderedListItem: Sub [link] item",
+            "Link: [link]",
+            "Line: Last \\ item gone",
+            "UnorderedListItem: Last \\ item gone",
+            "AlternativeTextStyle: gone"
+        };
+        Assert.assertEquals(joinWithNewlines(expectedTags), describeTagTexts(processor));
+    }
+
+    @Test
+    public void testProcessedPositionsInLongListSection() {
+        // Every item of a long list section should still point to its own text
+        StringBuilder markdownText = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            markdownText.append("* Item \\*").append(i).append("\\* with **bold** \\\\ text\n");
+        }
+        SimpleMarkdownTextProcessor processor = SimpleMarkdownTextProcessor.process(markdownText.toString(), findTags(markdownText.toString()));
+        int itemIndex = 0;
+        int styleIndex = 0;
+        for (ProcessedMarkdownTag tag : processor.tags) {
+            String tagText = processor.text.substring(tag.startPosition, tag.endPosition);
+            if (tag.type == MarkdownTag.Type.UnorderedListItem) {
+                Assert.assertEquals("Item *" + itemIndex + "* with bold \\ text", tagText);
+                itemIndex++;
+            } else if (tag.type == MarkdownTag.Type.TextStyle) {
+                Assert.assertEquals("bold", tagText);
+                styleIndex++;
+            }
+        }
+        Assert.assertEquals(300, itemIndex);
+        Assert.assertEquals(300, styleIndex);
+    }
+
+
+    // --
+    // Helpers
+    // --
+
+    private List<MarkdownTag> findTags(String markdownText) {
+        SimpleMarkdownSymbolFinder symbolFinder = new SimpleMarkdownSymbolFinderJava();
+        symbolFinder.scanText(markdownText);
+        return new SimpleMarkdownTagFinder().findTags(markdownText, symbolFinder.getSymbolStorage());
+    }
+
+    private void assertProcessedTags(SimpleMarkdownTextProcessor processor, String markdownText) {
+        Assert.assertEquals(describeTags(SimpleMarkdownTextProcessor.process(markdownText, findTags(markdownText)).tags), describeTags(processor.tags));
+    }
+
+    private String describeTags(List<ProcessedMarkdownTag> tags) {
+        StringBuilder result = new StringBuilder();
+        for (ProcessedMarkdownTag tag : tags) {
+            result.append(tag.type).append(" ").append(tag.weight).append(" ").append(tag.startPosition).append("-").append(tag.endPosition);
+            result.append(" ").append(tag.counter).append(" ").append(tag.link).append("\n");
+        }
+        return result.toString();
+    }
+
+    private String describeTagTexts(SimpleMarkdownTextProcessor processor) {
+        List<String> result = new ArrayList<>();
+        for (ProcessedMarkdownTag tag : processor.tags) {
+            result.add(tag.type + ": " + processor.text.substring(tag.startPosition, tag.endPosition));
+        }
+        return joinWithNewlines(result.toArray(new String[0]));
+    }
+
+    private String joinWithNewlines(String[] stringArray) {
+        StringBuilder joinedText = new StringBuilder();
+        boolean firstLine = true;
+        for (String string : stringArray) {
+            if (!firstLine) {
+                joinedText.append("\n");
+            }
+            joinedText.append(string);
+            firstLine = false;
+        }
+        return joinedText.toString();
+    }
+}
@@ -4,7 +4,15 @@ import junit.framework.Assert;
 
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Symbol finder test: find symbols in markdown text
@@ -220,16 +228,72 @@ public class SimpleMarkdownSymbolFinderTest {
         assertSymbols(new String[0], new WrappedMarkdownSymbol[0]);
     }
 
+    @Test
+    public void testParallelScan() {
+        // Small parts make sure splits are tried near escaped newlines, escaped backslashes and symbols spanning multiple lines
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            String markdownText = createParallelScanText();
+            assertParallelSymbols(new SimpleMarkdownSymbolFinderParallel(executor, 8, 16), markdownText);
+            assertParallelSymbols(new SimpleMarkdownSymbolFinderParallel(executor, 64, 1), markdownText);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testParallelScanOnSameExecutor() throws Exception {
+        // Parts which can't start on the executor are scanned on the calling thread instead of waiting forever
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final String markdownText = createParallelScanText();
+            Future<Void> result = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    assertParallelSymbols(new SimpleMarkdownSymbolFinderParallel(executor, 8, 16), markdownText);
+                    return null;
+                }
+            });
+            result.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
 
     // --
     // Helpers
     // --
 
     private void assertSymbols(String[] markdownTextLines, WrappedMarkdownSymbol[] expectedSymbols) {
-        // Scan text
-        SimpleMarkdownSymbolFinder symbolFinder = new SimpleMarkdownSymbolFinderJava();
+        SimpleMarkdownStreamingSymbolFinder[] symbolFinders = new SimpleMarkdownStreamingSymbolFinder[] { new SimpleMarkdownSymbolFinderJava(), new SimpleMarkdownSymbolFinderPrimitive() };
+        for (SimpleMarkdownStreamingSymbolFinder symbolFinder : symbolFinders) {
+            // Scan twice to make sure symbol finders can be reused
+            assertSymbols(symbolFinder, markdownTextLines, expectedSymbols, ScanInput.FromString);
+            assertSymbols(symbolFinder, markdownTextLines, expectedSymbols, ScanInput.FromString);
+            assertSymbols(symbolFinder, markdownTextLines, expectedSymbols, ScanInput.FromCharSequence);
+            assertSymbols(symbolFinder, markdownTextLines, expectedSymbols, ScanInput.FromReader);
+        }
+    }
+
+    private void assertSymbols(SimpleMarkdownStreamingSymbolFinder symbolFinder, String[] markdownTextLines, WrappedMarkdownSymbol[] expectedSymbols, ScanInput scanInput) {
+        // Scan text, the reader returns a single character for each read to test symbols crossing chunk boundaries
         String markdownText = joinWithNewlines(markdownTextLines);
-        symbolFinder.scanText(markdownText);
+        switch (scanInput) {
+            case FromCharSequence:
+                symbolFinder.scanText(new StringBuilder(markdownText));
+                break;
+            case FromReader:
+                try {
+                    symbolFinder.scan(new SingleCharacterReader(markdownText));
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                break;
+            default:
+                symbolFinder.scanText(markdownText);
+                break;
+        }
 
         // Compare
         List<MarkdownSymbol> foundSymbols = symbolFinder.getSymbolStorage().symbols;
@@ -239,6 +303,43 @@ public class SimpleMarkdownSymbolFinderTest {
         Assert.assertEquals(expectedSymbols.length, foundSymbols.size());
     }
 
+    private void assertParallelSymbols(SimpleMarkdownSymbolFinder symbolFinder, String markdownText) {
+        // Compare with a sequential scan, scan twice to make sure the part symbol finders can be reused
+        SimpleMarkdownSymbolFinder sequentialSymbolFinder = new SimpleMarkdownSymbolFinderPrimitive();
+        sequentialSymbolFinder.scanText(markdownText);
+        List<MarkdownSymbol> expectedSymbols = sequentialSymbolFinder.getSymbolStorage().symbols;
+        for (int scan = 0; scan < 2; scan++) {
+            symbolFinder.scanText(markdownText);
+            List<MarkdownSymbol> foundSymbols = symbolFinder.getSymbolStorage().symbols;
+            for (int i = 0; i < foundSymbols.size() && i < expectedSymbols.size(); i++) {
+                Assert.assertEquals(new WrappedMarkdownSymbol(markdownText, expectedSymbols.get(i)), new WrappedMarkdownSymbol(markdownText, foundSymbols.get(i)));
+            }
+            Assert.assertEquals(expectedSymbols.size(), foundSymbols.size());
+        }
+    }
+
+    private String createParallelScanText() {
+        String[] markdownTextLines = new String[] {
+            "# Header with an escaped newline \\",
+            "continuing here",
+            "Escaped backslash \\\\",
+            "Text with **bold text spanning",
+            "two lines** and an escaped \\\\\\",
+            "newline after an escaped backslash",
+            "",
+            "* List item with a [link](https://www.github.com \"Link title\")",
+            "  1. Nested _item_ \\",
+            "\\",
+            "\\\\",
+            ""
+        };
+        StringBuilder markdownText = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            markdownText.append(joinWithNewlines(markdownTextLines));
+        }
+        return markdownText.toString();
+    }
+
     private String joinWithNewlines(String[] stringArray) {
         StringBuilder joinedText = new StringBuilder();
         boolean firstLine = true;
@@ -253,6 +354,35 @@ public class SimpleMarkdownSymbolFinderTest {
     }
 
 
+    // --
+    // Helpers to scan text from different input types
+    // --
+
+    private enum ScanInput {
+        FromString,
+        FromCharSequence,
+        FromReader
+    }
+
+    private static class SingleCharacterReader extends Reader {
+        private final StringReader reader;
+
+        public SingleCharacterReader(String text) {
+            reader = new StringReader(text);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            return reader.read(buffer, offset, Math.min(1, length));
+        }
+
+        @Override
+        public void close() {
+            reader.close();
+        }
+    }
+
+
     // --
     // Helper class to simplify comparing symbols
     // --
@@ -0,0 +1,118 @@
+package com.crescentflare.simplemarkdownparser.symbolfinder;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * Symbol storage test: sorting, cleaning and symbol access
+ */
+public class SimpleMarkdownSymbolStorageTest {
+
+    // --
+    // Tests
+    // --
+
+    @Test
+    public void testSortStable() {
+        // Symbols at the same position keep the order in which they were added
+        SimpleMarkdownSymbolStorage storage = new SimpleMarkdownSymbolStorage();
+        storage.addSymbol(MarkdownSymbol.Type.TextBlock, 1, 8, 12, 0);
+        storage.addSymbol(MarkdownSymbol.Type.UnorderedListItem, 0, 2, 3, 2);
+        storage.addSymbol(MarkdownSymbol.Type.Newline, 0, 7, 8, 7);
+        storage.addSymbol(MarkdownSymbol.Type.FirstTextStyle, 0, 2, 3, 2);
+        storage.addSymbol(MarkdownSymbol.Type.TextBlock, 0, 2, 7, 2);
+        storage.addSymbol(MarkdownSymbol.Type.Escape, 0, 0, 1, 0);
+        storage.sort();
+        assertSymbolTypes(storage,
+            MarkdownSymbol.Type.Escape,
+            MarkdownSymbol.Type.UnorderedListItem,
+            MarkdownSymbol.Type.FirstTextStyle,
+            MarkdownSymbol.Type.TextBlock,
+            MarkdownSymbol.Type.Newline,
+            MarkdownSymbol.Type.TextBlock
+        );
+        Assert.assertEquals(0, storage.getStartPosition(0));
+        Assert.assertEquals(2, storage.getStartPosition(3));
+        Assert.assertEquals(7, storage.getEndPosition(3));
+        Assert.assertEquals(1, storage.getLine(5));
+        Assert.assertEquals(12, storage.getEndPosition(5));
+    }
+
+    @Test
+    public void testCleanOverlaps() {
+        // Single character text styles at the position of an unordered list item are removed, others are kept
+        SimpleMarkdownSymbolStorage storage = new SimpleMarkdownSymbolStorage();
+        storage.addSymbol(MarkdownSymbol.Type.FirstTextStyle, 1, 12, 13, 2);
+        storage.addSymbol(MarkdownSymbol.Type.UnorderedListItem, 0, 0, 1, 0);
+        storage.addSymbol(MarkdownSymbol.Type.FirstTextStyle, 0, 0, 1, 0);
+        storage.addSymbol(MarkdownSymbol.Type.TextBlock, 0, 2, 9, 2);
+        storage.addSymbol(MarkdownSymbol.Type.FirstTextStyle, 1, 10, 12, 0);
+        storage.addSymbol(MarkdownSymbol.Type.UnorderedListItem, 1, 10, 11, 0);
+        storage.addSymbol(MarkdownSymbol.Type.FirstTextStyle, 0, 8, 9, 8);
+        storage.sort();
+        storage.cleanOverlaps();
+        assertSymbolTypes(storage,
+            MarkdownSymbol.Type.UnorderedListItem,
+            MarkdownSymbol.Type.TextBlock,
+            MarkdownSymbol.Type.FirstTextStyle,
+            MarkdownSymbol.Type.FirstTextStyle,
+            MarkdownSymbol.Type.UnorderedListItem,
+            MarkdownSymbol.Type.FirstTextStyle
+        );
+        Assert.assertEquals(8, storage.getStartPosition(2));
+        Assert.assertEquals(12, storage.getEndPosition(3));
+        Assert.assertEquals(12, storage.getStartPosition(5));
+    }
+
+    @Test
+    public void testSymbolListView() {
+        // The list reflects the storage and can't be changed
+        SimpleMarkdownSymbolStorage storage = new SimpleMarkdownSymbolStorage();
+        storage.addSymbol(MarkdownSymbol.Type.Header, 0, 0, 2, 0);
+        storage.addSymbol(MarkdownSymbol.Type.TextBlock, 0, 3, 9, 3);
+        Assert.assertEquals(2, storage.symbols.size());
+        MarkdownSymbol symbol = storage.symbols.get(1);
+        Assert.assertEquals(MarkdownSymbol.Type.TextBlock, symbol.type);
+        Assert.assertEquals(3, symbol.startPosition);
+        Assert.assertEquals(9, symbol.endPosition);
+        try {
+            storage.symbols.add(symbol);
+            Assert.fail("Expected the symbol list to be read-only");
+        } catch (UnsupportedOperationException ignored) {
+        }
+        storage.clearSymbols();
+        Assert.assertEquals(0, storage.symbols.size());
+    }
+
+    @Test
+    public void testTrimCapacity() {
+        // Trimming keeps the symbols, the storage can still grow afterwards
+        SimpleMarkdownSymbolStorage storage = new SimpleMarkdownSymbolStorage();
+        for (int i = 0; i < 1000; i++) {
+            storage.addSymbol(MarkdownSymbol.Type.TextBlock, i, i * 2, i * 2 + 1, 0);
+        }
+        storage.trimCapacity(100);
+        Assert.assertEquals(1000, storage.size());
+        Assert.assertEquals(1998, storage.getStartPosition(999));
+        storage.clearSymbols();
+        storage.trimCapacity(100);
+        for (int i = 0; i < 200; i++) {
+            storage.addSymbol(MarkdownSymbol.Type.Newline, i, i, i + 1, 0);
+        }
+        Assert.assertEquals(200, storage.size());
+        Assert.assertEquals(199, storage.getLine(199));
+    }
+
+
+    // --
+    // Helpers
+    // --
+
+    private void assertSymbolTypes(SimpleMarkdownSymbolStorage storage, MarkdownSymbol.Type... expectedTypes) {
+        for (int i = 0; i < storage.size() && i < expectedTypes.length; i++) {
+            Assert.assertEquals(expectedTypes[i], storage.getType(i));
+        }
+        Assert.assertEquals(expectedTypes.length, storage.size());
+    }
+}
@@ -1,13 +1,16 @@
 package com.crescentflare.simplemarkdownparser.tagfinder;
 
+import com.crescentflare.simplemarkdownparser.symbolfinder.MarkdownEscapeIndex;
 import com.crescentflare.simplemarkdownparser.symbolfinder.MarkdownSymbol;
 import com.crescentflare.simplemarkdownparser.symbolfinder.SimpleMarkdownSymbolFinder;
 import com.crescentflare.simplemarkdownparser.symbolfinder.SimpleMarkdownSymbolFinderJava;
 
 import junit.framework.Assert;
 
+import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -207,11 +210,98 @@ public class SimpleMarkdownTagFinderTest {
         assertTags(new String[0], new WrappedMarkdownTag[0]);
     }
 
+    @Test
+    public void testNewlineOnly() {
+        assertTags(new String[] { "", "" }, new WrappedMarkdownTag[] {
+            new WrappedMarkdownTag(MarkdownTag.Type.Line)
+        });
+        assertTags(new String[] { "", "", "" }, new WrappedMarkdownTag[] {
+            new WrappedMarkdownTag(MarkdownTag.Type.Line),
+            new WrappedMarkdownTag(MarkdownTag.Type.Line)
+        });
+    }
+
+    @Test
+    public void testEscapeSymbols() {
+        // Found tags have a mutable list with the same escapes as the range of the shared index
+        String markdownText = "Paragraph with \\*escapes\\* and a [\\[link\\]](https://www.github.com)\n\n* Item \\_one\\_";
+        SimpleMarkdownSymbolFinder symbolFinder = new SimpleMarkdownSymbolFinderJava();
+        symbolFinder.scanText(markdownText);
+        List<MarkdownTag> tags = new SimpleMarkdownTagFinder().findTags(markdownText, symbolFinder.getSymbolStorage());
+        for (MarkdownTag tag : tags) {
+            MarkdownEscapeIndex escapeIndex = tag.getEscapeIndex();
+            Assert.assertNotNull(tag.getSharedEscapeIndex());
+            Assert.assertEquals(tag.getEndEscapeIndex(escapeIndex) - tag.getFirstEscapeIndex(escapeIndex), tag.escapeSymbols.size());
+            for (int i = 0; i < tag.escapeSymbols.size(); i++) {
+                Assert.assertEquals(escapeIndex.getStartPosition(tag.getFirstEscapeIndex(escapeIndex) + i), tag.escapeSymbols.get(i).startPosition);
+            }
+            tag.escapeSymbols.add(new MarkdownSymbol(MarkdownSymbol.Type.Escape, 0, 0, 1, 0));
+        }
+        Assert.assertEquals(5, tags.get(0).escapeSymbols.size());
+
+        // Replacing the escapes stops using the shared index
+        MarkdownTag tag = tags.get(0);
+        tag.setEscapeSymbols(new ArrayList<MarkdownSymbol>());
+        Assert.assertNull(tag.getSharedEscapeIndex());
+        Assert.assertEquals(0, tag.getEscapeIndex().size());
+    }
+
+    @Test
+    public void testManyUnmatchedTextStyles() {
+        // Each symbol pairs with the next one of the same type, the last one stays unmatched
+        List<MarkdownTag> textStyleTags = findTextStyleTags(repeatText("*a ", 501) + repeatText("__b ", 301));
+        Assert.assertEquals(400, textStyleTags.size());
+        for (int i = 0; i < 250; i++) {
+            Assert.assertEquals(1, textStyleTags.get(i).weight);
+            Assert.assertEquals(i * 6, textStyleTags.get(i).startPosition);
+            Assert.assertEquals(i * 6 + 4, textStyleTags.get(i).endPosition);
+        }
+        for (int i = 250; i < 400; i++) {
+            Assert.assertEquals(2, textStyleTags.get(i).weight);
+        }
+    }
+
+    @Test
+    public void testDeeplyNestedTextStyles() {
+        // Nesting depth doesn't depend on the call stack
+        int depth = 5000;
+        String openSymbols = repeatText("*_", depth / 2);
+        String markdownText = openSymbols + "text" + new StringBuilder(openSymbols).reverse().toString();
+        List<MarkdownTag> textStyleTags = findTextStyleTags(markdownText);
+        Assert.assertEquals(depth, textStyleTags.size());
+        for (int i = 0; i < depth; i++) {
+            Assert.assertEquals(i, textStyleTags.get(i).startPosition);
+            Assert.assertEquals(markdownText.length() - i, textStyleTags.get(i).endPosition);
+            Assert.assertEquals(i + 1, textStyleTags.get(i).startText);
+            Assert.assertEquals(markdownText.length() - i - 1, textStyleTags.get(i).endText);
+        }
+    }
+
 
     // --
     // Helpers
     // --
 
+    private List<MarkdownTag> findTextStyleTags(String markdownText) {
+        SimpleMarkdownSymbolFinder symbolFinder = new SimpleMarkdownSymbolFinderJava();
+        symbolFinder.scanText(markdownText);
+        List<MarkdownTag> result = new ArrayList<>();
+        for (MarkdownTag tag : new SimpleMarkdownTagFinder().findTags(markdownText, symbolFinder.getSymbolStorage())) {
+            if (tag.type == MarkdownTag.Type.TextStyle || tag.type == MarkdownTag.Type.AlternativeTextStyle) {
+                result.add(tag);
+            }
+        }
+        return result;
+    }
+
+    private String repeatText(String text, int count) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            result.append(text);
+        }
+        return result.toString();
+    }
+
     private void assertTags(String[] markdownTextLines, WrappedMarkdownTag[] expectedTags) {
         // Find symbols
         SimpleMarkdownSymbolFinder symbolFinder = new SimpleMarkdownSymbolFinderJava();
@@ -225,6 +315,44 @@ public class SimpleMarkdownTagFinderTest {
             Assert.assertEquals(expectedTags[i], new WrappedMarkdownTag(markdownText, foundTags.get(i)));
         }
         Assert.assertEquals(expectedTags.length, foundTags.size());
+
+        // Visit tags, they should arrive in the same order
+        final List<MarkdownTag> visitedTags = new ArrayList<>();
+        tagFinder.visitTags(markdownText, symbolFinder.getSymbolStorage(), new MarkdownTagVisitor() {
+            @Override
+            public void enterSection(@NotNull MarkdownTag sectionTag) {
+                visitedTags.add(sectionTag);
+            }
+
+            @Override
+            public void visitLine(@NotNull MarkdownTag lineTag) {
+                visitedTags.add(lineTag);
+            }
+
+            @Override
+            public void visitTextStyle(@NotNull MarkdownTag textStyleTag) {
+                visitedTags.add(textStyleTag);
+            }
+
+            @Override
+            public void visitLink(@NotNull MarkdownTag linkTag) {
+                visitedTags.add(linkTag);
+            }
+
+            @Override
+            public void visitListItem(@NotNull MarkdownTag listItemTag) {
+                visitedTags.add(listItemTag);
+            }
+
+            @Override
+            public void exitSection(@NotNull MarkdownTag sectionTag) {
+            }
+        });
+        for (int i = 0; i < visitedTags.size() && i < expectedTags.length; i++) {
+            visitedTags.get(i).populateEscapeSymbols();
+            Assert.assertEquals(expectedTags[i], new WrappedMarkdownTag(markdownText, visitedTags.get(i)));
+        }
+        Assert.assertEquals(expectedTags.length, visitedTags.size());
     }
 
     private String joinWithNewlines(String[] stringArray) {